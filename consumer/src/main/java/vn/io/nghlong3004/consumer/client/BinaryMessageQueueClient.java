@@ -0,0 +1,225 @@
+package vn.io.nghlong3004.consumer.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import vn.io.nghlong3004.consumer.model.Message;
+import vn.io.nghlong3004.consumer.model.MessageQueueMetric;
+import vn.io.nghlong3004.consumer.model.Status;
+
+/**
+ * One multiplexed connection shared by every consumer task; responses are matched to requests by
+ * correlation id, so callers never wait behind each other's round-trips.
+ */
+@Slf4j
+public class BinaryMessageQueueClient implements AutoCloseable {
+
+	private final String host;
+	private final int port;
+	private final String queue;
+	private final int connectTimeoutMs;
+	private final long requestTimeoutMs;
+
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private final AtomicInteger correlationIds = new AtomicInteger();
+	private final ConcurrentMap<Integer, CompletableFuture<ByteBuffer>> pending = new ConcurrentHashMap<>();
+
+	private Socket socket;
+	private DataOutputStream out;
+	private short handle;
+	private volatile boolean closed;
+
+	public BinaryMessageQueueClient(String host, int port, String queue, int connectTimeoutMs,
+			long requestTimeoutMs) {
+		this.host = host;
+		this.port = port;
+		this.queue = queue;
+		this.connectTimeoutMs = connectTimeoutMs;
+		this.requestTimeoutMs = requestTimeoutMs;
+	}
+
+	public CompletableFuture<List<Message>> poll(String consumerName, int max, long timeoutMs) {
+		return call(BinaryProtocol.POLL, timeoutMs, out -> {
+			BinaryProtocol.writeString(out, consumerName);
+			out.writeInt(max);
+			out.writeLong(timeoutMs);
+		}).thenApply(in -> {
+			int count = in.getInt();
+			List<Message> messages = new ArrayList<>(count);
+			for (int i = 0; i < count; ++i) {
+				messages.add(Message.builder()
+				                    .id(in.getLong())
+				                    .senderName(BinaryProtocol.readString(in))
+				                    .content(BinaryProtocol.readString(in))
+				                    .created(new Timestamp(in.getLong()))
+				                    .build());
+			}
+			return messages;
+		});
+	}
+
+	public CompletableFuture<Void> ack(String consumerName, Status status, List<Long> ids) {
+		return call(BinaryProtocol.ACK, 0L, out -> {
+			BinaryProtocol.writeString(out, consumerName);
+			out.writeByte(status == Status.ACK ? 0 : 1);
+			out.writeByte(BinaryProtocol.ACK_IDS);
+			out.writeInt(ids.size());
+			for (Long id : ids) {
+				out.writeLong(id);
+			}
+		}).thenApply(in -> null);
+	}
+
+	public CompletableFuture<MessageQueueMetric> metric() {
+		return call(BinaryProtocol.METRIC, 0L, out -> {
+		}).thenApply(in -> new MessageQueueMetric(in.getInt(), in.getInt()));
+	}
+
+	private CompletableFuture<ByteBuffer> call(byte type, long serverWaitMs,
+			BinaryProtocol.PayloadWriter payload) {
+		int correlationId = correlationIds.incrementAndGet();
+		CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+		writeLock.lock();
+		try {
+			DataOutputStream stream = connect();
+			short queueHandle = handle;
+			byte[] frame = BinaryProtocol.encode((byte) (type | BinaryProtocol.QUEUE_HANDLE),
+					correlationId, out -> {
+						out.writeShort(queueHandle);
+						payload.write(out);
+					});
+			pending.put(correlationId, future);
+			stream.write(frame);
+			stream.flush();
+		} catch (IOException e) {
+			disconnect(e);
+			future.completeExceptionally(e);
+		} finally {
+			writeLock.unlock();
+		}
+		return future.orTimeout(serverWaitMs + requestTimeoutMs, TimeUnit.MILLISECONDS)
+		             .whenComplete((response, e) -> pending.remove(correlationId));
+	}
+
+	private DataOutputStream connect() throws IOException {
+		if (closed) {
+			throw new IOException("Client closed");
+		}
+		if (socket != null) {
+			return out;
+		}
+		Socket connection = new Socket();
+		connection.setTcpNoDelay(true);
+		DataInputStream in;
+		try {
+			connection.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+			connection.setSoTimeout(connectTimeoutMs);
+			out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+			in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			handle = BinaryProtocol.open(out, in, queue);
+			connection.setSoTimeout(0);
+		} catch (IOException e) {
+			connection.close();
+			out = null;
+			throw e;
+		}
+		socket = connection;
+		Thread reader = new Thread(() -> readLoop(connection, in), "consumer-binary-reader");
+		reader.setDaemon(true);
+		reader.start();
+		log.info("Connected to message-queue binary port {}:{}, queue={}", host, port, queue);
+		return out;
+	}
+
+	private void readLoop(Socket connection, DataInputStream in) {
+		Exception cause = new IOException("Binary reader stopped");
+		try {
+			while (true) {
+				int length = in.readInt();
+				if (length <= 0 || length > BinaryProtocol.MAX_FRAME_LENGTH) {
+					throw new IOException("Invalid frame length " + length);
+				}
+				byte[] frame = new byte[length];
+				in.readFully(frame);
+				ByteBuffer buffer = ByteBuffer.wrap(frame);
+				byte type = buffer.get();
+				int correlationId = buffer.getInt();
+				IllegalStateException error = null;
+				if (type == BinaryProtocol.ERROR) {
+					int status = buffer.getShort();
+					error = new IllegalStateException(status + " " + BinaryProtocol.readString(buffer));
+				}
+				CompletableFuture<ByteBuffer> future = pending.remove(correlationId);
+				if (future == null) {
+					continue;
+				}
+				if (error != null) {
+					future.completeExceptionally(error);
+				} else {
+					future.complete(buffer);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			cause = e;
+		} finally {
+			// Whatever stopped the reader, nothing will answer the requests still pending on this
+			// connection.
+			writeLock.lock();
+			try {
+				if (socket == connection) {
+					disconnect(cause);
+				}
+			} finally {
+				writeLock.unlock();
+			}
+		}
+	}
+
+	private void disconnect(Exception cause) {
+		if (socket == null) {
+			return;
+		}
+		if (!closed) {
+			log.warn("Binary connection lost: {}", cause.getMessage());
+		}
+		try {
+			socket.close();
+		} catch (IOException ignored) {
+			// already broken
+		}
+		socket = null;
+		out = null;
+		for (Integer correlationId : pending.keySet()) {
+			CompletableFuture<ByteBuffer> future = pending.remove(correlationId);
+			if (future != null) {
+				future.completeExceptionally(cause);
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		writeLock.lock();
+		try {
+			disconnect(new IOException("Client closed"));
+		} finally {
+			writeLock.unlock();
+		}
+	}
+}
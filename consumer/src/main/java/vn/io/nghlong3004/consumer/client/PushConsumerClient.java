@@ -0,0 +1,116 @@
+package vn.io.nghlong3004.consumer.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.http.WebSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import vn.io.nghlong3004.consumer.model.Message;
+import vn.io.nghlong3004.consumer.model.PushCommand;
+import vn.io.nghlong3004.consumer.model.PushDelivery;
+import vn.io.nghlong3004.consumer.model.Status;
+
+/**
+ * One consumer's WebSocket subscription. Pushed messages are buffered until {@link #take} hands them
+ * to the consumer loop; every {@link #ack} also returns the acked messages' credits to the server.
+ */
+@Slf4j
+public class PushConsumerClient implements WebSocket.Listener, AutoCloseable {
+
+	private final String consumerName;
+	private final ObjectMapper objectMapper;
+	private final BlockingQueue<Message> inbox = new LinkedBlockingQueue<>();
+	private final StringBuilder partial = new StringBuilder();
+	private final ReentrantLock sendLock = new ReentrantLock();
+
+	private volatile WebSocket webSocket;
+	private volatile Throwable failure;
+
+	PushConsumerClient(String consumerName, ObjectMapper objectMapper) {
+		this.consumerName = consumerName;
+		this.objectMapper = objectMapper;
+	}
+
+	void open(WebSocket webSocket, int credits) throws IOException {
+		this.webSocket = webSocket;
+		send(new PushCommand(PushCommand.Type.CREDIT, credits, null, null));
+	}
+
+	public List<Message> take(int max, long timeoutMs) throws IOException, InterruptedException {
+		List<Message> batch = new ArrayList<>(max);
+		Message first = inbox.poll(timeoutMs, TimeUnit.MILLISECONDS);
+		if (first == null) {
+			if (failure != null) {
+				throw new IOException("Push subscription closed", failure);
+			}
+			return batch;
+		}
+		batch.add(first);
+		inbox.drainTo(batch, max - 1);
+		return batch;
+	}
+
+	public void ack(Status status, List<Long> ids) throws IOException {
+		send(new PushCommand(PushCommand.Type.ACK, ids.size(), status, ids));
+	}
+
+	private void send(PushCommand command) throws IOException {
+		String text = objectMapper.writeValueAsString(command);
+		sendLock.lock();
+		try {
+			webSocket.sendText(text, true)
+			         .join();
+		} catch (RuntimeException e) {
+			throw new IOException("Push send failed", e);
+		} finally {
+			sendLock.unlock();
+		}
+	}
+
+	@Override
+	public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+		partial.append(data);
+		if (last) {
+			try {
+				PushDelivery delivery = objectMapper.readValue(partial.toString(), PushDelivery.class);
+				if (delivery.type() == PushDelivery.Type.MESSAGES && delivery.messages() != null) {
+					inbox.addAll(delivery.messages());
+				} else if (delivery.type() == PushDelivery.Type.ERROR) {
+					log.warn("[{}] push error {}: {}", consumerName, delivery.status(), delivery.message());
+				}
+			} catch (JsonProcessingException e) {
+				log.warn("[{}] malformed push frame: {}", consumerName, e.getMessage());
+			}
+			partial.setLength(0);
+		}
+		webSocket.request(1);
+		return null;
+	}
+
+	@Override
+	public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+		failure = new IOException("Closed by server: " + statusCode + " " + reason);
+		return null;
+	}
+
+	@Override
+	public void onError(WebSocket webSocket, Throwable error) {
+		failure = error;
+	}
+
+	@Override
+	public void close() {
+		WebSocket current = webSocket;
+		if (current != null && !current.isOutputClosed()) {
+			current.sendClose(WebSocket.NORMAL_CLOSURE, "")
+			       .exceptionally(e -> null);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package vn.io.nghlong3004.consumer.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+
+public class PushConsumerConnector {
+
+	private final HttpClient httpClient;
+	private final ObjectMapper objectMapper;
+	private final String pushUrl;
+	private final String queue;
+	private final int credits;
+	private final long connectTimeoutMs;
+
+	public PushConsumerConnector(ObjectMapper objectMapper, String pushUrl, String queue,
+			int credits, long connectTimeoutMs) {
+		this.httpClient = HttpClient.newBuilder()
+		                            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+		                            .build();
+		this.objectMapper = objectMapper;
+		this.pushUrl = pushUrl;
+		this.queue = queue;
+		this.credits = credits;
+		this.connectTimeoutMs = connectTimeoutMs;
+	}
+
+	public PushConsumerClient open(String consumerName) throws IOException {
+		PushConsumerClient client = new PushConsumerClient(consumerName, objectMapper);
+		URI uri = URI.create(pushUrl + "?consumerName=" + URLEncoder.encode(consumerName,
+				StandardCharsets.UTF_8) + "&queue=" + URLEncoder.encode(queue,
+				StandardCharsets.UTF_8));
+		try {
+			WebSocket webSocket = httpClient.newWebSocketBuilder()
+			                                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+			                                .buildAsync(uri, client)
+			                                .join();
+			client.open(webSocket, credits);
+		} catch (CompletionException e) {
+			throw new IOException("Push connect failed: " + uri, e.getCause());
+		}
+		return client;
+	}
+}
@@ -0,0 +1,21 @@
+package vn.io.nghlong3004.consumer.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import vn.io.nghlong3004.consumer.client.BinaryMessageQueueClient;
+
+@Configuration
+@ConditionalOnProperty(name = "consumer.transport", havingValue = "BINARY")
+public class BinaryClientConfiguration {
+
+	@Bean
+	public BinaryMessageQueueClient binaryMessageQueueClient(
+			@Value("${consumer.binary.host}") String host, @Value("${consumer.binary.port}") int port,
+			@Value("${consumer.queue}") String queue,
+			@Value("${consumer.connect-timeout-ms}") int connectTimeoutMs,
+			@Value("${consumer.read-timeout-ms}") long readTimeoutMs) {
+		return new BinaryMessageQueueClient(host, port, queue, connectTimeoutMs, readTimeoutMs);
+	}
+}
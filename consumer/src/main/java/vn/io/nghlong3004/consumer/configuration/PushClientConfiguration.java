@@ -0,0 +1,22 @@
+package vn.io.nghlong3004.consumer.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import vn.io.nghlong3004.consumer.client.PushConsumerConnector;
+
+@Configuration
+@ConditionalOnProperty(name = "consumer.transport", havingValue = "PUSH")
+public class PushClientConfiguration {
+
+	@Bean
+	public PushConsumerConnector pushConsumerConnector(ObjectMapper objectMapper,
+			@Value("${consumer.push.url}") String pushUrl, @Value("${consumer.queue}") String queue,
+			@Value("${consumer.push.credits}") int credits,
+			@Value("${consumer.connect-timeout-ms}") long connectTimeoutMs) {
+		return new PushConsumerConnector(objectMapper, pushUrl, queue, Math.max(1, credits),
+				connectTimeoutMs);
+	}
+}
@@ -1,5 +1,7 @@
 package vn.io.nghlong3004.consumer.model;
 
-public record ACK(String consumerName, Status status) {
+import java.util.List;
+
+public record ACK(String consumerName, Status status, List<Long> ids) {
 
 }
@@ -7,7 +7,8 @@ import lombok.Data;
 @Builder
 @Data
 public class Message {
-	
+
+	private Long id;
 	private String senderName;
 	private String content;
 	private Timestamp created;
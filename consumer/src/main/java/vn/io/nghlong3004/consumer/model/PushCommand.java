@@ -0,0 +1,11 @@
+package vn.io.nghlong3004.consumer.model;
+
+import java.util.List;
+
+public record PushCommand(Type type, Integer credits, Status status, List<Long> ids) {
+
+	public enum Type {
+		CREDIT,
+		ACK
+	}
+}
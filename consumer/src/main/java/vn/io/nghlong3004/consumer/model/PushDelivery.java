@@ -0,0 +1,11 @@
+package vn.io.nghlong3004.consumer.model;
+
+import java.util.List;
+
+public record PushDelivery(Type type, List<Message> messages, Integer status, String message) {
+
+	public enum Type {
+		MESSAGES,
+		ERROR
+	}
+}
@@ -5,18 +5,26 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import vn.io.nghlong3004.consumer.client.BinaryMessageQueueClient;
+import vn.io.nghlong3004.consumer.client.PushConsumerConnector;
 import vn.io.nghlong3004.consumer.model.MessageQueueMetric;
 import vn.io.nghlong3004.consumer.repository.ConsumerRepository;
 import vn.io.nghlong3004.consumer.service.ConsumerScalerService;
@@ -30,16 +38,25 @@ public class ConsumerScalerSerivceImpl implements ConsumerScalerService {
 	private final RestTemplate rest;
 	private final ConsumerRepository consumerRepository;
 	private final MetricService metrics;
+	private final MeterRegistry meterRegistry;
+	private final ObjectProvider<BinaryMessageQueueClient> binaryClient;
+	private final ObjectProvider<PushConsumerConnector> pushConnector;
 	private ScheduledExecutorService consumerPool;
+	private ExecutorService consumerWorkers;
 	private ScheduledExecutorService controlPool;
 
-	@Value("${base-url}")
+	@Value("${base-url}/${consumer.queue}")
 	private String baseUrl;
 
+	@Value("${spring.threads.virtual.enabled}")
+	private boolean virtualThreads;
+
 	@Value("${consumer.scaler.pace-ms}")
 	private long paceMs;
 	@Value("${consumer.connect-timeout-ms}")
 	private long timeoutMs;
+	@Value("${consumer.batch-size}")
+	private int batchSize;
 
 	@Value("${consumer.scaler.initial}")
 	private int initialConsumers;
@@ -66,10 +83,12 @@ public class ConsumerScalerSerivceImpl implements ConsumerScalerService {
 	@Value("${consumer.scaler.down-threshold}")
 	private double downThreshold;
 
-	private final List<ScheduledFuture<?>> consumerTasks = new ArrayList<>();
+	private final List<PacedTask> consumerTasks = new ArrayList<>();
 	private ScheduledFuture<?> controlTask;
+	private Counter scaledUp;
+	private Counter scaledDown;
 
-	private double utilEma = 0;
+	private volatile double utilEma = 0;
 	private boolean firstTick = true;
 	private long lastScaleAt = 0L;
 	private long upSince = -1L;
@@ -77,9 +96,19 @@ public class ConsumerScalerSerivceImpl implements ConsumerScalerService {
 
 	@PostConstruct
 	public void init() {
-		consumerPool = Executors.newScheduledThreadPool(Math.max(1, maxConsumers),
-				new NamedThreadFactory("producer-"));
-		controlPool = Executors.newScheduledThreadPool(1, new NamedThreadFactory("producer-ctrl-"));
+		consumerPool = Executors.newSingleThreadScheduledExecutor(
+				new NamedThreadFactory("consumer-tick-"));
+		consumerWorkers = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor()
+				: Executors.newFixedThreadPool(Math.max(1, maxConsumers),
+						new NamedThreadFactory("consumer-"));
+		controlPool = Executors.newScheduledThreadPool(1, new NamedThreadFactory("consumer-ctrl-"));
+
+		Gauge.builder("consumer.active", consumerTasks, List::size)
+		     .register(meterRegistry);
+		Gauge.builder("consumer.scaler.utilization.ema", this, scaler -> scaler.utilEma)
+		     .register(meterRegistry);
+		scaledUp = meterRegistry.counter("consumer.scaler.decisions", "direction", "up");
+		scaledDown = meterRegistry.counter("consumer.scaler.decisions", "direction", "down");
 	}
 
 	@Override
@@ -99,6 +128,7 @@ public class ConsumerScalerSerivceImpl implements ConsumerScalerService {
 		}
 		cancelAllConsumers();
 		consumerPool.shutdownNow();
+		consumerWorkers.shutdownNow();
 		controlPool.shutdownNow();
 	}
 
@@ -190,6 +220,7 @@ public class ConsumerScalerSerivceImpl implements ConsumerScalerService {
 			return;
 		}
 		log.info("Scale consumers {} -> {} (utilEma={})", cur, target, String.format("%.2f", utilEma));
+		(target > cur ? scaledUp : scaledDown).increment();
 		scaleTo(target);
 	}
 
@@ -217,7 +248,8 @@ public class ConsumerScalerSerivceImpl implements ConsumerScalerService {
 	private void addOneConsumer(int index) {
 		String name = "Consumer-" + index;
 		Runnable r = buildConsumerTask(name);
-		ScheduledFuture<?> task = consumerPool.scheduleAtFixedRate(r, 0, paceMs, TimeUnit.MILLISECONDS);
+		PacedTask task = new PacedTask(r, consumerWorkers);
+		task.start(consumerPool, 0, paceMs);
 		consumerTasks.add(task);
 	}
 
@@ -226,13 +258,13 @@ public class ConsumerScalerSerivceImpl implements ConsumerScalerService {
 		if (last < 0) {
 			return;
 		}
-		ScheduledFuture<?> scheduledFuture = consumerTasks.remove(last);
-		scheduledFuture.cancel(true);
+		consumerTasks.remove(last)
+		             .cancel();
 	}
 
 	private void cancelAllConsumers() {
-		for (ScheduledFuture<?> scheduledFuture : consumerTasks) {
-			scheduledFuture.cancel(true);
+		for (PacedTask task : consumerTasks) {
+			task.cancel();
 		}
 		consumerTasks.clear();
 	}
@@ -242,8 +274,11 @@ public class ConsumerScalerSerivceImpl implements ConsumerScalerService {
 		                          .consumerRepository(consumerRepository)
 		                          .name(name)
 		                          .rest(rest)
+		                          .binaryClient(binaryClient.getIfAvailable())
+		                          .pushConnector(pushConnector.getIfAvailable())
 		                          .baseUrl(baseUrl)
 		                          .timeoutMs(timeoutMs)
+		                          .batchSize(batchSize)
 		                          .running(true)
 		                          .build();
 	}
@@ -252,6 +287,45 @@ public class ConsumerScalerSerivceImpl implements ConsumerScalerService {
 		return Math.max(min, Math.min(max, v));
 	}
 
+	/**
+	 * Fired by the scheduler every pace period; hands the worker to the executor unless its
+	 * previous run is still going.
+	 */
+	private static class PacedTask implements Runnable {
+
+		private final Runnable work;
+		private final ExecutorService executor;
+		private ScheduledFuture<?> tick;
+		private Future<?> current;
+		private boolean cancelled;
+
+		PacedTask(Runnable work, ExecutorService executor) {
+			this.work = work;
+			this.executor = executor;
+		}
+
+		synchronized void start(ScheduledExecutorService scheduler, long initialDelayMs,
+				long periodMs) {
+			tick = scheduler.scheduleAtFixedRate(this, initialDelayMs, periodMs,
+					TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public synchronized void run() {
+			if (!cancelled && (current == null || current.isDone())) {
+				current = executor.submit(work);
+			}
+		}
+
+		synchronized void cancel() {
+			cancelled = true;
+			tick.cancel(false);
+			if (current != null) {
+				current.cancel(true);
+			}
+		}
+	}
+
 	private static class NamedThreadFactory implements ThreadFactory {
 
 		private final String prefix;
@@ -1,8 +1,13 @@
 package vn.io.nghlong3004.consumer.service.impl;
 
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.client.RestTemplate;
+import vn.io.nghlong3004.consumer.client.BinaryMessageQueueClient;
+import vn.io.nghlong3004.consumer.client.PushConsumerClient;
+import vn.io.nghlong3004.consumer.client.PushConsumerConnector;
 import vn.io.nghlong3004.consumer.model.ACK;
 import vn.io.nghlong3004.consumer.model.Message;
 import vn.io.nghlong3004.consumer.model.Status;
@@ -15,24 +20,84 @@ public class ConsumerServiceImpl implements ConsumerService {
 
 	private final String name;
 	private final RestTemplate rest;
+	private final BinaryMessageQueueClient binaryClient;
+	private final PushConsumerConnector pushConnector;
 	private final ConsumerRepository consumerRepository;
 	private final long timeoutMs;
+	private final int batchSize;
 	private final String baseUrl;
 	private boolean running;
 
 	@Override
 	public void run() {
+		if (pushConnector != null) {
+			consumePushed();
+			return;
+		}
 		while (running) {
 			try {
-				String url = String.format(baseUrl + "/poll?consumerName=%s&timeoutMs=%d", name, timeoutMs);
-				Message item = rest.getForObject(url, Message.class);
-				log.info("[{}] read", name);
-				url = baseUrl + "/ack";
-				ACK ack = new ACK(name, Status.ACK);
+				List<Long> ids = new ArrayList<>();
+				if (binaryClient != null) {
+					for (Message item : binaryClient.poll(name, Math.max(1, batchSize), timeoutMs)
+					                                .join()) {
+						ids.add(item.getId());
+					}
+					log.info("[{}] read {}", name, ids.size());
+				} else if (batchSize > 1) {
+					Message[] items = rest.getForObject(
+							baseUrl + "/poll?consumerName={name}&max={max}&timeoutMs={timeoutMs}",
+							Message[].class, name, batchSize, timeoutMs);
+					if (items != null) {
+						for (Message item : items) {
+							ids.add(item.getId());
+						}
+					}
+					log.info("[{}] read {}", name, ids.size());
+				} else {
+					Message item = rest.getForObject(
+							baseUrl + "/poll?consumerName={name}&timeoutMs={timeoutMs}", Message.class, name,
+							timeoutMs);
+					if (item != null) {
+						ids.add(item.getId());
+					}
+					log.info("[{}] read", name);
+				}
+				if (ids.isEmpty()) {
+					continue;
+				}
+				if (binaryClient != null) {
+					binaryClient.ack(name, Status.ACK, ids)
+					            .join();
+					continue;
+				}
+				String url = baseUrl + "/ack";
+				ACK ack = new ACK(name, Status.ACK, ids);
 				rest.put(url, ack);
 			} catch (Exception e) {
 				//log.warn("[{}] read error: {}", name, e.toString());
 			}
 		}
 	}
+
+	private void consumePushed() {
+		try (PushConsumerClient client = pushConnector.open(name)) {
+			while (running) {
+				List<Message> items = client.take(Math.max(1, batchSize), timeoutMs);
+				if (items.isEmpty()) {
+					continue;
+				}
+				List<Long> ids = new ArrayList<>(items.size());
+				for (Message item : items) {
+					ids.add(item.getId());
+				}
+				log.info("[{}] read {}", name, ids.size());
+				client.ack(Status.ACK, ids);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+			      .interrupt();
+		} catch (Exception e) {
+			//log.warn("[{}] push error: {}", name, e.toString());
+		}
+	}
 }
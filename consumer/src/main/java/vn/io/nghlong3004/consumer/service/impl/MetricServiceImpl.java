@@ -1,9 +1,11 @@
 package vn.io.nghlong3004.consumer.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import vn.io.nghlong3004.consumer.client.BinaryMessageQueueClient;
 import vn.io.nghlong3004.consumer.model.MessageQueueMetric;
 import vn.io.nghlong3004.consumer.service.MetricService;
 
@@ -12,12 +14,18 @@ import vn.io.nghlong3004.consumer.service.MetricService;
 public class MetricServiceImpl implements MetricService {
 
 	private final RestTemplate rest;
-	@Value("${base-url}")
+	private final ObjectProvider<BinaryMessageQueueClient> binaryClient;
+	@Value("${base-url}/${consumer.queue}")
 	private String baseUrl;
 
 	@Override
 	public MessageQueueMetric fetch() {
 		try {
+			BinaryMessageQueueClient client = binaryClient.getIfAvailable();
+			if (client != null) {
+				return client.metric()
+				             .get();
+			}
 			return rest.getForObject(baseUrl + "/metric", MessageQueueMetric.class);
 		} catch (Exception e) {
 			return null;
@@ -0,0 +1,90 @@
+package vn.io.nghlong3004.message_queue.controller;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.dto.DeadLetterMetric;
+import vn.io.nghlong3004.message_queue.model.dto.DeadLetterPage;
+import vn.io.nghlong3004.message_queue.model.dto.DeadLetterRequest;
+import vn.io.nghlong3004.message_queue.model.dto.DeadLetterResponse;
+import vn.io.nghlong3004.message_queue.model.dto.DeadLetterResult;
+import vn.io.nghlong3004.message_queue.registry.MessageQueueRegistry;
+import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+
+/**
+ * Messages land here once they reach the configured delivery limit. Listing pages by id: pass the
+ * previous page's {@code nextAfterId} as {@code afterId}. Requeue and purge act on the given ids, or
+ * on the whole store when the body or its ids are omitted.
+ */
+@RestController
+@RequestMapping("/api/v1")
+@RequiredArgsConstructor
+@Validated
+public class DeadLetterController {
+
+	private final MessageQueueRegistry registry;
+
+	@GetMapping({"/dlq", "/{queue}/dlq"})
+	@ResponseStatus(code = HttpStatus.OK)
+	public DeadLetterPage list(@PathVariable(required = false) String queue,
+			@RequestParam(defaultValue = "0") long afterId,
+			@RequestParam(defaultValue = "50") @Min(1) @Max(1000) int limit) {
+		MessageQueueService messageQueueService = queue(queue);
+		List<Message> messages = messageQueueService.getDeadLetters(afterId, limit);
+		List<DeadLetterResponse> responses = new ArrayList<>(messages.size());
+		for (Message message : messages) {
+			responses.add(new DeadLetterResponse(message.getId(), message.getSenderName(),
+					message.getContent(), message.getCreated(), message.getPriority(),
+					message.getDeliveries()));
+		}
+		Long nextAfterId = messages.size() < limit ? null : messages.get(messages.size() - 1)
+		                                                            .getId();
+		return new DeadLetterPage(responses, nextAfterId, messageQueueService.getDeadLetterCount());
+	}
+
+	@PostMapping({"/dlq/requeue", "/{queue}/dlq/requeue"})
+	@ResponseStatus(code = HttpStatus.OK)
+	public DeadLetterResult requeue(@PathVariable(required = false) String queue,
+			@RequestBody(required = false) DeadLetterRequest request) {
+		return new DeadLetterResult(queue(queue).requeueDeadLetters(ids(request)));
+	}
+
+	@DeleteMapping({"/dlq", "/{queue}/dlq"})
+	@ResponseStatus(code = HttpStatus.OK)
+	public DeadLetterResult purge(@PathVariable(required = false) String queue,
+			@RequestBody(required = false) DeadLetterRequest request) {
+		return new DeadLetterResult(queue(queue).purgeDeadLetters(ids(request)));
+	}
+
+	@GetMapping({"/dlq/metric", "/{queue}/dlq/metric"})
+	@ResponseStatus(code = HttpStatus.OK)
+	public DeadLetterMetric metric(@PathVariable(required = false) String queue) {
+		MessageQueueService messageQueueService = queue(queue);
+		return new DeadLetterMetric(messageQueueService.getDeadLetterCount(),
+				messageQueueService.getDeadLettered(), messageQueueService.getDeadLettersRequeued(),
+				messageQueueService.getDeadLettersPurged(), messageQueueService.getDeadLettersDropped());
+	}
+
+	private MessageQueueService queue(String name) {
+		return registry.resolve(name)
+		               .getQueue();
+	}
+
+	private List<Long> ids(DeadLetterRequest request) {
+		return request == null ? null : request.ids();
+	}
+}
@@ -1,11 +1,18 @@
 package vn.io.nghlong3004.message_queue.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -13,11 +20,19 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import vn.io.nghlong3004.message_queue.metrics.LatencyHistogram;
+import vn.io.nghlong3004.message_queue.metrics.StageLatencies;
+import vn.io.nghlong3004.message_queue.metrics.StageLatencies.Stage;
 import vn.io.nghlong3004.message_queue.model.Message;
 import vn.io.nghlong3004.message_queue.model.dto.ACKRequest;
 import vn.io.nghlong3004.message_queue.model.dto.ConsumerResponse;
+import vn.io.nghlong3004.message_queue.model.dto.LatencyMetric;
+import vn.io.nghlong3004.message_queue.model.dto.LeaseRequest;
 import vn.io.nghlong3004.message_queue.model.dto.MessageQueueMetric;
 import vn.io.nghlong3004.message_queue.model.dto.ProducerRequest;
+import vn.io.nghlong3004.message_queue.model.dto.ProducerResult;
+import vn.io.nghlong3004.message_queue.model.dto.StageLatency;
+import vn.io.nghlong3004.message_queue.registry.MessageQueueRegistry;
 import vn.io.nghlong3004.message_queue.service.MessageQueueService;
 
 @RestController
@@ -26,37 +41,139 @@ import vn.io.nghlong3004.message_queue.service.MessageQueueService;
 @Validated
 public class MessageQueueController {
 
-	private final MessageQueueService messageQueueService;
+	private final MessageQueueRegistry registry;
 
-	@PostMapping(value = "/put", consumes = MediaType.APPLICATION_JSON_VALUE)
+	@PostMapping(value = {"/put", "/{queue}/put"}, consumes = MediaType.APPLICATION_JSON_VALUE)
 	@ResponseStatus(code = HttpStatus.CREATED)
-	public void put(@Valid @RequestBody ProducerRequest producerRequest) {
-		messageQueueService.enqueue(Message.builder()
-		                                   .senderName(producerRequest.senderName())
-		                                   .content(producerRequest.content())
-		                                   .created(producerRequest.created())
-		                                   .build());
+	public void put(@PathVariable(required = false) String queue,
+			@Valid @RequestBody ProducerRequest producerRequest) {
+		queue(queue).enqueue(toMessage(producerRequest));
 	}
 
-	@GetMapping("/poll")
+	@PostMapping(value = {"/put/batch", "/{queue}/put/batch"},
+			consumes = MediaType.APPLICATION_JSON_VALUE)
 	@ResponseStatus(code = HttpStatus.OK)
-	public ConsumerResponse poll(@RequestParam String consumerName,
-			@RequestParam(defaultValue = "0") long timeoutMs) {
-		Message message = messageQueueService.poll(consumerName, timeoutMs);
-		return new ConsumerResponse(message.getSenderName(), message.getContent(),
-				message.getCreated());
+	public List<ProducerResult> putBatch(@PathVariable(required = false) String queue,
+			@RequestBody @NotEmpty List<@Valid ProducerRequest> producerRequests) {
+		List<Message> messages = new ArrayList<>(producerRequests.size());
+		for (ProducerRequest producerRequest : producerRequests) {
+			messages.add(toMessage(producerRequest));
+		}
+		MessageQueueService service = queue(queue);
+		int accepted = service.enqueueAll(messages);
+
+		String rejection = null;
+		if (accepted < messages.size()) {
+			String limit = service.getAdmissionLimit();
+			rejection = limit == null ? "MessageQueue is full" : "MessageQueue is full: " + limit;
+		}
+		List<ProducerResult> results = new ArrayList<>(messages.size());
+		for (int i = 0; i < messages.size(); ++i) {
+			results.add(i < accepted ? new ProducerResult(i, true, null)
+					: new ProducerResult(i, false, rejection));
+		}
+		return results;
+	}
+
+	@GetMapping(value = {"/poll", "/{queue}/poll"}, params = "!max")
+	@ResponseStatus(code = HttpStatus.OK)
+	public CompletableFuture<ConsumerResponse> poll(@PathVariable(required = false) String queue,
+			@RequestParam String consumerName, @RequestParam(defaultValue = "0") long timeoutMs) {
+		return queue(queue).pollAsync(consumerName, 1, timeoutMs)
+		                   .thenApply(messages -> toResponse(messages.get(0)));
+	}
+
+	@GetMapping(value = {"/poll", "/{queue}/poll"}, params = "max")
+	@ResponseStatus(code = HttpStatus.OK)
+	public CompletableFuture<List<ConsumerResponse>> pollBatch(
+			@PathVariable(required = false) String queue, @RequestParam String consumerName,
+			@RequestParam @Min(1) int max, @RequestParam(defaultValue = "0") long timeoutMs) {
+		return queue(queue).pollAsync(consumerName, max, timeoutMs)
+		                   .thenApply(this::toResponses);
+	}
+
+	@PutMapping(value = {"/ack", "/{queue}/ack"}, consumes = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseStatus(code = HttpStatus.OK)
+	public void ack(@PathVariable(required = false) String queue,
+			@Valid @RequestBody ACKRequest ackRequest) {
+		MessageQueueService messageQueueService = queue(queue);
+		if (ackRequest.upToId() != null) {
+			messageQueueService.handleAckUpTo(ackRequest.consumerName(), ackRequest.status(),
+					ackRequest.upToId(), ackRequest.retryDelayMs());
+		} else if (ackRequest.id() != null || ackRequest.ids() != null) {
+			List<Long> ids = new ArrayList<>();
+			if (ackRequest.id() != null) {
+				ids.add(ackRequest.id());
+			}
+			if (ackRequest.ids() != null) {
+				ids.addAll(ackRequest.ids());
+			}
+			messageQueueService.handleAck(ackRequest.consumerName(), ackRequest.status(), ids,
+					ackRequest.retryDelayMs());
+		} else {
+			messageQueueService.handleAck(ackRequest.consumerName(), ackRequest.status(),
+					ackRequest.retryDelayMs());
+		}
+	}
+
+	@PutMapping(value = {"/extend", "/{queue}/extend"}, consumes = MediaType.APPLICATION_JSON_VALUE)
+	@ResponseStatus(code = HttpStatus.OK)
+	public void extend(@PathVariable(required = false) String queue,
+			@Valid @RequestBody LeaseRequest leaseRequest) {
+		queue(queue).extendLease(leaseRequest.consumerName(), leaseRequest.ids(),
+				leaseRequest.leaseMs() == null ? 0 : leaseRequest.leaseMs());
 	}
 
-	@PutMapping(value = "/ack", consumes = MediaType.APPLICATION_JSON_VALUE)
+	@GetMapping({"/metric", "/{queue}/metric"})
 	@ResponseStatus(code = HttpStatus.OK)
-	public void ack(@Valid @RequestBody ACKRequest ackRequest) {
-		messageQueueService.handleAck(ackRequest.consumerName(), ackRequest.status());
+	public MessageQueueMetric size(@PathVariable(required = false) String queue) {
+		return queue(queue).getMetric();
 	}
 
-	@GetMapping("/metric")
+	@GetMapping({"/metric/latency", "/{queue}/metric/latency"})
 	@ResponseStatus(code = HttpStatus.OK)
-	public MessageQueueMetric size() {
-		return new MessageQueueMetric(messageQueueService.getCapacity(), messageQueueService.getSize());
+	public LatencyMetric latency(@PathVariable(required = false) String queue) {
+		StageLatencies latencies = queue(queue).getLatencies();
+		return new LatencyMetric(latencies.getWindowMs(), new Timestamp(latencies.getClosedAtMillis()),
+				toLatency(latencies.get(Stage.NOT_READY)), toLatency(latencies.get(Stage.READY)),
+				toLatency(latencies.get(Stage.IN_PROGRESS)), toLatency(latencies.get(Stage.END_TO_END)));
+	}
+
+	private MessageQueueService queue(String name) {
+		return registry.resolve(name)
+		               .getQueue();
+	}
+
+	private List<ConsumerResponse> toResponses(List<Message> messages) {
+		List<ConsumerResponse> responses = new ArrayList<>(messages.size());
+		for (Message message : messages) {
+			responses.add(toResponse(message));
+		}
+		return responses;
+	}
+
+	private ConsumerResponse toResponse(Message message) {
+		return new ConsumerResponse(message.getId(), message.getSenderName(), message.getContent(),
+				message.getCreated());
+	}
+
+	private StageLatency toLatency(LatencyHistogram histogram) {
+		return new StageLatency(histogram.count(), millis(histogram.quantile(0.5)),
+				millis(histogram.quantile(0.9)), millis(histogram.quantile(0.99)),
+				millis(histogram.quantile(0.999)), millis(histogram.max()));
+	}
+
+	private double millis(long micros) {
+		return micros / 1000.0;
+	}
+
+	private Message toMessage(ProducerRequest producerRequest) {
+		return Message.builder()
+		              .senderName(producerRequest.senderName())
+		              .content(producerRequest.content())
+		              .created(producerRequest.created())
+		              .priority(producerRequest.priority() == null ? 0 : producerRequest.priority())
+		              .build();
 	}
 
 }
@@ -3,27 +3,32 @@ package vn.io.nghlong3004.message_queue.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
-import vn.io.nghlong3004.message_queue.service.MessageQueueScalerService;
+import vn.io.nghlong3004.message_queue.registry.MessageQueueRegistry;
 
 @RestController
-@RequestMapping("/api/v1/scaler")
+@RequestMapping("/api/v1")
 @RequiredArgsConstructor
 public class MessageQueueScalerController {
 
-	private final MessageQueueScalerService messageQueueScalerService;
+	private final MessageQueueRegistry registry;
 
-	@GetMapping("/start")
+	@GetMapping({"/scaler/start", "/{queue}/scaler/start"})
 	@ResponseStatus(code = HttpStatus.OK)
-	public void start() {
-		messageQueueScalerService.start();
+	public void start(@PathVariable(required = false) String queue) {
+		registry.resolve(queue)
+		        .getScaler()
+		        .start();
 	}
 
-	@GetMapping("/stop")
+	@GetMapping({"/scaler/stop", "/{queue}/scaler/stop"})
 	@ResponseStatus(code = HttpStatus.OK)
-	public void stop() {
-		messageQueueScalerService.close();
+	public void stop(@PathVariable(required = false) String queue) {
+		registry.resolve(queue)
+		        .getScaler()
+		        .close();
 	}
 }
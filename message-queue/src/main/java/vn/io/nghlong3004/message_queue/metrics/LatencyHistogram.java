@@ -0,0 +1,78 @@
+package vn.io.nghlong3004.message_queue.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-linear histogram in the style of HdrHistogram: values below 32 get their own bucket, larger
+ * values keep their top five bits, so every bucket is within ~3% of the value it holds. Recording is
+ * a single atomic increment.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BITS = 5;
+	private static final int SUB = 1 << SUB_BITS;
+	private static final int HALF = SUB >> 1;
+	private static final int BUCKETS = SUB + (Long.SIZE - SUB_BITS) * HALF;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+	public void record(long value) {
+		long clamped = Math.max(0L, value);
+		counts.incrementAndGet(index(clamped));
+		count.increment();
+		max.accumulate(clamped);
+	}
+
+	public long count() {
+		return count.sum();
+	}
+
+	public long max() {
+		return max.get();
+	}
+
+	/**
+	 * The upper bound of the bucket holding the given quantile, capped at the largest recorded value.
+	 */
+	public long quantile(double quantile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; ++i) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return 0L;
+		}
+		long rank = Math.max(1L, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(highest(i), max());
+			}
+		}
+		return max();
+	}
+
+	private static int index(long value) {
+		if (value < SUB) {
+			return (int) value;
+		}
+		int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - (SUB_BITS - 1);
+		return SUB + (shift - 1) * HALF + (int) ((value >>> shift) - HALF);
+	}
+
+	private static long highest(int index) {
+		if (index < SUB) {
+			return index;
+		}
+		int shift = (index - SUB) / HALF + 1;
+		long lowest = (long) ((index - SUB) % HALF + HALF) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,125 @@
+package vn.io.nghlong3004.message_queue.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import vn.io.nghlong3004.message_queue.queue.AdmissionLimit;
+import vn.io.nghlong3004.message_queue.queue.PayloadArena;
+import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+
+/**
+ * Micrometer meters for one queue, all tagged {@code queue=<name>}.
+ */
+public class QueueMetrics {
+
+	private final MeterRegistry registry;
+	private final Tags tags;
+
+	private final Counter enqueued;
+	private final Counter rejectedFull;
+	private final Counter rejectedMemory;
+	private final Counter rejectedEmpty;
+	private final Counter polled;
+	private final Counter acked;
+	private final Counter nacked;
+	private final Counter scaledUp;
+	private final Counter scaledDown;
+	private final Counter budgetGrown;
+	private final Counter budgetShrunk;
+	private final Timer lockWait;
+
+	public QueueMetrics(MeterRegistry registry, String queue) {
+		this.registry = registry;
+		this.tags = Tags.of("queue", queue);
+		this.enqueued = registry.counter("mq.messages.enqueued", tags);
+		this.rejectedFull = registry.counter("mq.rejections", tags.and("reason", "full"));
+		this.rejectedMemory = registry.counter("mq.rejections", tags.and("reason", "memory"));
+		this.rejectedEmpty = registry.counter("mq.rejections", tags.and("reason", "empty"));
+		this.polled = registry.counter("mq.messages.polled", tags);
+		this.acked = registry.counter("mq.messages.acked", tags);
+		this.nacked = registry.counter("mq.messages.nacked", tags);
+		this.scaledUp = registry.counter("mq.scaler.decisions", tags.and("direction", "up"));
+		this.scaledDown = registry.counter("mq.scaler.decisions", tags.and("direction", "down"));
+		this.budgetGrown = registry.counter("mq.scaler.memory.decisions", tags.and("direction", "up"));
+		this.budgetShrunk = registry.counter("mq.scaler.memory.decisions",
+				tags.and("direction", "down"));
+		this.lockWait = Timer.builder("mq.lock.wait")
+		                     .description("Time spent acquiring the queue lock")
+		                     .tags(tags)
+		                     .register(registry);
+	}
+
+	public void bind(MessageQueueService queue) {
+		Gauge.builder("mq.size", queue, MessageQueueService::getSize)
+		     .tags(tags)
+		     .register(registry);
+		Gauge.builder("mq.capacity", queue, MessageQueueService::getCapacity)
+		     .tags(tags)
+		     .register(registry);
+		Gauge.builder("mq.dead.letters", queue, MessageQueueService::getDeadLetterCount)
+		     .tags(tags)
+		     .register(registry);
+		Gauge.builder("mq.payload.bytes", queue, MessageQueueService::getPayloadBytes)
+		     .baseUnit("bytes")
+		     .tags(tags)
+		     .register(registry);
+		Gauge.builder("mq.memory.budget", queue, MessageQueueService::getMemoryBudget)
+		     .baseUnit("bytes")
+		     .tags(tags)
+		     .register(registry);
+		FunctionCounter.builder("mq.leases.expired", queue, MessageQueueService::getExpiredLeases)
+		               .tags(tags)
+		               .register(registry);
+	}
+
+	public void bind(PayloadArena arena) {
+		Gauge.builder("mq.offheap.used", arena, PayloadArena::getUsedBytes)
+		     .baseUnit("bytes")
+		     .tags(tags)
+		     .register(registry);
+		Gauge.builder("mq.offheap.reserved", arena, PayloadArena::getReservedBytes)
+		     .baseUnit("bytes")
+		     .tags(tags)
+		     .register(registry);
+	}
+
+	public void enqueued(int count) {
+		enqueued.increment(count);
+	}
+
+	public void rejectedFull(AdmissionLimit limit) {
+		(limit == AdmissionLimit.MEMORY ? rejectedMemory : rejectedFull).increment();
+	}
+
+	public void rejectedEmpty() {
+		rejectedEmpty.increment();
+	}
+
+	public void polled(int count) {
+		polled.increment(count);
+	}
+
+	public void acked(int count) {
+		acked.increment(count);
+	}
+
+	public void nacked(int count) {
+		nacked.increment(count);
+	}
+
+	public void scaled(boolean up) {
+		(up ? scaledUp : scaledDown).increment();
+	}
+
+	public void budgetScaled(boolean up) {
+		(up ? budgetGrown : budgetShrunk).increment();
+	}
+
+	public void lockWait(long nanos) {
+		lockWait.record(nanos, TimeUnit.NANOSECONDS);
+	}
+}
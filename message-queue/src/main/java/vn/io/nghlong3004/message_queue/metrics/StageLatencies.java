@@ -0,0 +1,79 @@
+package vn.io.nghlong3004.message_queue.metrics;
+
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+import vn.io.nghlong3004.message_queue.model.MessageStatus;
+
+/**
+ * Time spent per message in each stage, plus created-to-ack, in microseconds. Samples land in the
+ * current window; {@link #rotate()} closes it, and readers see the last closed window.
+ */
+public class StageLatencies {
+
+	public enum Stage {
+		NOT_READY,
+		READY,
+		IN_PROGRESS,
+		END_TO_END
+	}
+
+	private static final Stage[] STAGES = Stage.values();
+
+	private final long windowMs;
+	private volatile LatencyHistogram[] current = newWindow();
+	private volatile LatencyHistogram[] closed = newWindow();
+	private volatile long closedAtMillis = System.currentTimeMillis();
+
+	public StageLatencies(long windowMs) {
+		this.windowMs = windowMs;
+	}
+
+	public void record(MessageStatus status, long nanos) {
+		Stage stage = switch (status) {
+			case NOT_READY -> Stage.NOT_READY;
+			case READY -> Stage.READY;
+			case IN_PROGRESS -> Stage.IN_PROGRESS;
+			default -> null;
+		};
+		if (stage != null) {
+			record(stage, TimeUnit.NANOSECONDS.toMicros(nanos));
+		}
+	}
+
+	public void record(Stage stage, long micros) {
+		current[stage.ordinal()].record(micros);
+	}
+
+	public void recordEndToEnd(Timestamp created) {
+		if (created != null) {
+			record(Stage.END_TO_END,
+					TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis() - created.getTime()));
+		}
+	}
+
+	public void rotate() {
+		closed = current;
+		current = newWindow();
+		closedAtMillis = System.currentTimeMillis();
+	}
+
+	public LatencyHistogram get(Stage stage) {
+		return closed[stage.ordinal()];
+	}
+
+	public long getWindowMs() {
+		return windowMs;
+	}
+
+	public long getClosedAtMillis() {
+		return closedAtMillis;
+	}
+
+	private static LatencyHistogram[] newWindow() {
+		LatencyHistogram[] window = new LatencyHistogram[STAGES.length];
+		for (int i = 0; i < window.length; ++i) {
+			window[i] = new LatencyHistogram();
+		}
+		return window;
+	}
+}
@@ -2,19 +2,32 @@ package vn.io.nghlong3004.message_queue.model;
 
 import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
-import lombok.Data;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import lombok.Getter;
 
-@Data
+@Getter
 public class DelayedMessage implements Delayed {
 
+	private static final AtomicIntegerFieldUpdater<DelayedMessage> CLAIMED =
+			AtomicIntegerFieldUpdater.newUpdater(DelayedMessage.class, "claimed");
+
 	private final Message message;
 	private final long readyAtNanos;
+	private volatile int claimed;
 
 	public DelayedMessage(Message message, long delayMillis) {
 		this.message = message;
 		this.readyAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
 	}
 
+	public boolean claim() {
+		return CLAIMED.compareAndSet(this, 0, 1);
+	}
+
+	public boolean isClaimed() {
+		return claimed != 0;
+	}
+
 	@Override
 	public long getDelay(TimeUnit timeUnit) {
 		long remaining = readyAtNanos - System.nanoTime();
@@ -23,8 +36,9 @@ public class DelayedMessage implements Delayed {
 
 	@Override
 	public int compareTo(Delayed delayed) {
-		long diff = getDelay(TimeUnit.NANOSECONDS) - delayed.getDelay(TimeUnit.NANOSECONDS);
-		return Long.compare(diff, 0);
+		if (delayed instanceof DelayedMessage other) {
+			return Long.compare(readyAtNanos - other.readyAtNanos, 0);
+		}
+		return Long.compare(getDelay(TimeUnit.NANOSECONDS), delayed.getDelay(TimeUnit.NANOSECONDS));
 	}
 }
-
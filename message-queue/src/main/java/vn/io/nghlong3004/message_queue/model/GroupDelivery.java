@@ -0,0 +1,25 @@
+package vn.io.nghlong3004.message_queue.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * One consumer group's view of a shared message: the group's own delivery count and lease, so the
+ * message itself is never copied per group.
+ */
+@Getter
+@Setter
+public class GroupDelivery implements Leasable {
+
+	private final long position;
+	private final Message message;
+	private int deliveries;
+	private long leasedAtNanos;
+	private volatile String leaseOwner;
+	private volatile long leaseExpiresAtNanos;
+
+	public GroupDelivery(long position, Message message) {
+		this.position = position;
+		this.message = message;
+	}
+}
@@ -0,0 +1,16 @@
+package vn.io.nghlong3004.message_queue.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+@Getter
+@EqualsAndHashCode(callSuper = true)
+public class GroupLeaseExpiry extends LeaseExpiry {
+
+	private final String group;
+
+	public GroupLeaseExpiry(String group, long messageId, String consumerName, long expiresAtNanos) {
+		super(messageId, consumerName, expiresAtNanos);
+		this.group = group;
+	}
+}
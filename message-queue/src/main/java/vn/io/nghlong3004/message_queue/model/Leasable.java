@@ -0,0 +1,16 @@
+package vn.io.nghlong3004.message_queue.model;
+
+/**
+ * Whatever a consumer holds under a lease: a message read directly from its queue, or a consumer
+ * group's delivery of a fan-out message.
+ */
+public interface Leasable {
+
+	String getLeaseOwner();
+
+	void setLeaseOwner(String leaseOwner);
+
+	long getLeaseExpiresAtNanos();
+
+	void setLeaseExpiresAtNanos(long leaseExpiresAtNanos);
+}
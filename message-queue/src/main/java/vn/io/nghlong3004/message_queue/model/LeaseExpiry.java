@@ -0,0 +1,27 @@
+package vn.io.nghlong3004.message_queue.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * A lease deadline, keyed by message id, owner and deadline only, so a pending expiry does not keep
+ * the message reachable and an equal key cancels it.
+ */
+@Getter
+@EqualsAndHashCode
+public class LeaseExpiry {
+
+	private final long messageId;
+	private final String consumerName;
+	private final long expiresAtNanos;
+
+	public LeaseExpiry(long messageId, String consumerName, long expiresAtNanos) {
+		this.messageId = messageId;
+		this.consumerName = consumerName;
+		this.expiresAtNanos = expiresAtNanos;
+	}
+
+	public boolean matches(String leaseOwner, long leaseExpiresAtNanos) {
+		return leaseExpiresAtNanos == expiresAtNanos && consumerName.equals(leaseOwner);
+	}
+}
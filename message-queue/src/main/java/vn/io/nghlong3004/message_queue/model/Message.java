@@ -1,17 +1,100 @@
 package vn.io.nghlong3004.message_queue.model;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.sql.Timestamp;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import vn.io.nghlong3004.message_queue.queue.PayloadArena;
 
 @Builder
 @Data
-public class Message {
+public class Message implements Leasable {
+
+	private static final VarHandle ARENA;
+
+	static {
+		try {
+			ARENA = MethodHandles.lookup()
+			                     .findVarHandle(Message.class, "arena", PayloadArena.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
 
 	private Long id;
 	private String senderName;
 	private String content;
+	private int priority;
+	private int deliveries;
+	private int payloadBytes;
 	private MessageStatus status;
 	private Timestamp created;
+	private volatile String leaseOwner;
+	private volatile long leaseExpiresAtNanos;
+	private long stageStartedNanos;
+
+	/**
+	 * Set while {@code content} lives off-heap; the string field is null for that time. Cleared with
+	 * an atomic swap so exactly one caller frees the block.
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@ToString.Exclude
+	@EqualsAndHashCode.Exclude
+	private volatile PayloadArena arena;
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private long contentHandle;
+
+	public String getContent() {
+		PayloadArena stored = arena;
+		return stored == null ? content : stored.read(contentHandle);
+	}
+
+	/**
+	 * Moves the content into {@code target} unless it does not fit there. Must happen before the
+	 * message is visible to other threads.
+	 */
+	public void moveOffHeap(PayloadArena target) {
+		if (arena != null || content == null) {
+			return;
+		}
+		long handle = target.store(content);
+		if (handle == PayloadArena.NONE) {
+			return;
+		}
+		contentHandle = handle;
+		arena = target;
+		content = null;
+	}
+
+	/**
+	 * Brings the content back onto the heap and frees its off-heap block.
+	 */
+	public void moveOnHeap() {
+		PayloadArena stored = arena;
+		if (stored == null) {
+			return;
+		}
+		content = stored.read(contentHandle);
+		if (ARENA.compareAndSet(this, stored, null)) {
+			stored.free(contentHandle);
+		}
+	}
 
+	/**
+	 * Frees the off-heap block of a message that is done with; its content reads as null afterwards.
+	 */
+	public void releasePayload() {
+		PayloadArena stored = (PayloadArena) ARENA.getAndSet(this, null);
+		if (stored != null) {
+			stored.free(contentHandle);
+		}
+	}
 }
@@ -3,5 +3,6 @@ package vn.io.nghlong3004.message_queue.model;
 public enum MessageStatus {
 	NOT_READY,
 	READY,
-	IN_PROGRESS
+	IN_PROGRESS,
+	DEAD_LETTER
 }
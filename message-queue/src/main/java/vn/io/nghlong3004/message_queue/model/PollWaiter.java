@@ -0,0 +1,35 @@
+package vn.io.nghlong3004.message_queue.model;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+public class PollWaiter {
+
+	private static final AtomicIntegerFieldUpdater<PollWaiter> CLAIMED =
+			AtomicIntegerFieldUpdater.newUpdater(PollWaiter.class, "claimed");
+
+	private final String consumerName;
+	private final int max;
+	private final CompletableFuture<List<Message>> future = new CompletableFuture<>();
+	@Setter
+	private volatile ScheduledFuture<?> timeout;
+	private volatile int claimed;
+
+	public PollWaiter(String consumerName, int max) {
+		this.consumerName = consumerName;
+		this.max = max;
+	}
+
+	public boolean claim() {
+		return CLAIMED.compareAndSet(this, 0, 1);
+	}
+
+	public boolean isClaimed() {
+		return claimed != 0;
+	}
+}
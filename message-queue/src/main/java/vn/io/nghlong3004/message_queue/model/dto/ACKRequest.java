@@ -1,9 +1,12 @@
 package vn.io.nghlong3004.message_queue.model.dto;
 
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import java.util.List;
 import vn.io.nghlong3004.message_queue.model.Status;
 
-public record ACKRequest(@NotBlank String consumerName, @NotNull Status status) {
+public record ACKRequest(@NotBlank String consumerName, @NotNull Status status, Long id,
+                         List<Long> ids, Long upToId, @Min(0) Long retryDelayMs) {
 
 }
@@ -0,0 +1,6 @@
+package vn.io.nghlong3004.message_queue.model.dto;
+
+public record DeadLetterMetric(int size, long deadLettered, long requeued, long purged,
+                               long dropped) {
+
+}
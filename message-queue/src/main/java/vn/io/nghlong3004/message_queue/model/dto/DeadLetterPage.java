@@ -0,0 +1,7 @@
+package vn.io.nghlong3004.message_queue.model.dto;
+
+import java.util.List;
+
+public record DeadLetterPage(List<DeadLetterResponse> messages, Long nextAfterId, int total) {
+
+}
@@ -0,0 +1,8 @@
+package vn.io.nghlong3004.message_queue.model.dto;
+
+import java.sql.Timestamp;
+
+public record DeadLetterResponse(Long id, String senderName, String content, Timestamp created,
+                                 int priority, int deliveries) {
+
+}
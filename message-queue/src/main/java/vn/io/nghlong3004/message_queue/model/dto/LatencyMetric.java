@@ -0,0 +1,8 @@
+package vn.io.nghlong3004.message_queue.model.dto;
+
+import java.sql.Timestamp;
+
+public record LatencyMetric(long windowMs, Timestamp windowEnd, StageLatency notReady,
+                            StageLatency ready, StageLatency inProgress, StageLatency endToEnd) {
+
+}
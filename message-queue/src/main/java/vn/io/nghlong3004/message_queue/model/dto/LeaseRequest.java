@@ -0,0 +1,9 @@
+package vn.io.nghlong3004.message_queue.model.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import java.util.List;
+
+public record LeaseRequest(@NotBlank String consumerName, List<Long> ids, @Min(1) Long leaseMs) {
+
+}
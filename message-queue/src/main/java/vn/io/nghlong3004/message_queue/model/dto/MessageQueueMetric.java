@@ -1,5 +1,7 @@
 package vn.io.nghlong3004.message_queue.model.dto;
 
-public record MessageQueueMetric(int capacity, int size) {
+public record MessageQueueMetric(int capacity, int size, long expiredLeases, int notReady, int ready,
+                                 int inProgress, int deadLetters, long payloadBytes,
+                                 long memoryBudget) {
 
 }
@@ -1,10 +1,12 @@
 package vn.io.nghlong3004.message_queue.model.dto;
 
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import java.sql.Timestamp;
 
 public record ProducerRequest(@NotBlank String senderName, @NotBlank String content,
-                              @NotNull Timestamp created) {
+                              @NotNull Timestamp created, @Min(0) @Max(9) Integer priority) {
 
 }
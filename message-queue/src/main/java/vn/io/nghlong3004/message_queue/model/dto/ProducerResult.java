@@ -0,0 +1,5 @@
+package vn.io.nghlong3004.message_queue.model.dto;
+
+public record ProducerResult(int index, boolean accepted, String reason) {
+
+}
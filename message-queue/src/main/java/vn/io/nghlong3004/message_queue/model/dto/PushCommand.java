@@ -0,0 +1,13 @@
+package vn.io.nghlong3004.message_queue.model.dto;
+
+import java.util.List;
+import vn.io.nghlong3004.message_queue.model.Status;
+
+public record PushCommand(Type type, Integer credits, Status status, List<Long> ids,
+                          Long retryDelayMs) {
+
+	public enum Type {
+		CREDIT,
+		ACK
+	}
+}
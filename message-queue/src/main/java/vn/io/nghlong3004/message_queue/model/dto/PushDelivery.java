@@ -0,0 +1,12 @@
+package vn.io.nghlong3004.message_queue.model.dto;
+
+import java.util.List;
+
+public record PushDelivery(Type type, List<ConsumerResponse> messages, Integer status,
+                           String message) {
+
+	public enum Type {
+		MESSAGES,
+		ERROR
+	}
+}
@@ -0,0 +1,6 @@
+package vn.io.nghlong3004.message_queue.model.dto;
+
+public record StageLatency(long count, double p50Ms, double p90Ms, double p99Ms, double p999Ms,
+                           double maxMs) {
+
+}
@@ -0,0 +1,115 @@
+package vn.io.nghlong3004.message_queue.protocol;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+import vn.io.nghlong3004.message_queue.exception.ResourceException;
+import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+
+class BinaryConnection {
+
+	private static final int INITIAL_BUFFER_SIZE = 64 << 10;
+
+	@Getter
+	private final SocketChannel channel;
+	private final Consumer<BinaryConnection> writeRequested;
+	private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+	private final List<MessageQueueService> queues = new CopyOnWriteArrayList<>();
+	private ByteBuffer readBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+	private SelectionKey key;
+
+	BinaryConnection(SocketChannel channel, Consumer<BinaryConnection> writeRequested) {
+		this.channel = channel;
+		this.writeRequested = writeRequested;
+	}
+
+	void register(SelectionKey key) {
+		this.key = key;
+	}
+
+	synchronized short open(MessageQueueService queue) {
+		int handle = queues.indexOf(queue);
+		if (handle >= 0) {
+			return (short) handle;
+		}
+		if (queues.size() > Short.MAX_VALUE) {
+			throw new ResourceException(HttpStatus.TOO_MANY_REQUESTS, "Too many open queue handles");
+		}
+		queues.add(queue);
+		return (short) (queues.size() - 1);
+	}
+
+	MessageQueueService queue(short handle) {
+		if (handle < 0 || handle >= queues.size()) {
+			throw new ResourceException(HttpStatus.BAD_REQUEST, "Unknown queue handle " + handle);
+		}
+		return queues.get(handle);
+	}
+
+	List<ByteBuffer> read() throws IOException {
+		if (channel.read(readBuffer) < 0) {
+			throw new IOException("Connection closed by peer");
+		}
+		readBuffer.flip();
+		List<ByteBuffer> frames = new ArrayList<>();
+		while (readBuffer.remaining() >= Integer.BYTES) {
+			int length = readBuffer.getInt(readBuffer.position());
+			if (length <= 0 || length > BinaryProtocol.MAX_FRAME_LENGTH) {
+				throw new IOException("Invalid frame length " + length);
+			}
+			if (readBuffer.remaining() < Integer.BYTES + length) {
+				break;
+			}
+			readBuffer.getInt();
+			byte[] frame = new byte[length];
+			readBuffer.get(frame);
+			frames.add(ByteBuffer.wrap(frame));
+		}
+		readBuffer.compact();
+		if (!readBuffer.hasRemaining()) {
+			ByteBuffer larger = ByteBuffer.allocate(readBuffer.capacity() * 2);
+			readBuffer.flip();
+			larger.put(readBuffer);
+			readBuffer = larger;
+		}
+		return frames;
+	}
+
+	void send(ByteBuffer frame) {
+		outbound.offer(frame);
+		writeRequested.accept(this);
+	}
+
+	void flush() throws IOException {
+		ByteBuffer frame;
+		while ((frame = outbound.peek()) != null) {
+			channel.write(frame);
+			if (frame.hasRemaining()) {
+				key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+				return;
+			}
+			outbound.poll();
+		}
+		key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+	}
+
+	void close() {
+		if (key != null) {
+			key.cancel();
+		}
+		try {
+			channel.close();
+		} catch (IOException ignored) {
+			// already closing
+		}
+	}
+}
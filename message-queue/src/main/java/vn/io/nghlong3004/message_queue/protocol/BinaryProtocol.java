@@ -0,0 +1,82 @@
+package vn.io.nghlong3004.message_queue.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Frame layout, big-endian: {@code int length | byte type | int correlationId | payload}, where
+ * length counts everything after itself. A response echoes the request's correlation id with the
+ * {@link #RESPONSE} bit set on the type, or carries type {@link #ERROR} with
+ * {@code short status | string message}. Strings are {@code int length | UTF-8 bytes}. A frame
+ * too short to carry a correlation id is answered with an {@link #ERROR} on correlation id 0.
+ * <p>
+ * {@link #OPEN} binds a queue name to a per-connection {@code short} handle once; requests with
+ * the {@link #QUEUE_HANDLE} bit set carry that handle right after the correlation id, requests
+ * without it address the default queue.
+ * <p>
+ * An ACK frame may end with an optional {@code long retryDelayMs} for NACK; a negative value, or no
+ * value, applies the queue's configured backoff.
+ */
+@UtilityClass
+public class BinaryProtocol {
+
+	public static final byte PUT = 1;
+	public static final byte POLL = 2;
+	public static final byte ACK = 3;
+	public static final byte METRIC = 4;
+	public static final byte OPEN = 5;
+	public static final byte QUEUE_HANDLE = 0x40;
+	public static final byte TYPE_MASK = 0x3F;
+	public static final byte ERROR = 0x7F;
+	public static final byte RESPONSE = (byte) 0x80;
+
+	public static final byte ACK_ALL = 0;
+	public static final byte ACK_IDS = 1;
+	public static final byte ACK_UP_TO = 2;
+
+	public static final int HEADER_LENGTH = Byte.BYTES + Integer.BYTES;
+	public static final int MAX_FRAME_LENGTH = 16 << 20;
+
+	@FunctionalInterface
+	public interface PayloadWriter {
+
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	public static ByteBuffer encode(byte type, int correlationId, PayloadWriter payload) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0);
+			out.writeByte(type);
+			out.writeInt(correlationId);
+			payload.write(out);
+			ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+			frame.putInt(0, frame.remaining() - Integer.BYTES);
+			return frame;
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	public static String readString(ByteBuffer in) {
+		int length = in.getInt();
+		if (length < 0 || length > in.remaining()) {
+			throw new IllegalArgumentException("Malformed string length " + length);
+		}
+		String value = new String(in.array(), in.arrayOffset() + in.position(), length,
+				StandardCharsets.UTF_8);
+		in.position(in.position() + length);
+		return value;
+	}
+}
@@ -0,0 +1,347 @@
+package vn.io.nghlong3004.message_queue.protocol;
+
+import jakarta.annotation.PostConstruct;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import vn.io.nghlong3004.message_queue.exception.ResourceException;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.Status;
+import vn.io.nghlong3004.message_queue.model.dto.MessageQueueMetric;
+import vn.io.nghlong3004.message_queue.registry.MessageQueueRegistry;
+import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BinaryProtocolServer implements AutoCloseable {
+
+	private final MessageQueueRegistry registry;
+
+	private final AtomicBoolean running = new AtomicBoolean(false);
+	private final ConcurrentLinkedQueue<BinaryConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+
+	private Selector selector;
+	private ServerSocketChannel serverChannel;
+	private ExecutorService workers;
+	private Thread selectorThread;
+
+	@Value("${message-queue.binary.enabled}")
+	private boolean enabled;
+
+	@Value("${message-queue.binary.port}")
+	private int port;
+
+	@Value("${message-queue.binary.workers}")
+	private int workerCount;
+
+	@Value("${spring.threads.virtual.enabled}")
+	private boolean virtualThreads;
+
+	@PostConstruct
+	void init() throws IOException {
+		if (!enabled) {
+			return;
+		}
+		if (workerCount < 1) {
+			log.warn("Configured binary workers < 1 ({}). Forcing to 1.", workerCount);
+			workerCount = 1;
+		}
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port));
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		workers = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor()
+				: Executors.newFixedThreadPool(workerCount, workerThreadFactory());
+
+		running.set(true);
+		selectorThread = new Thread(this::selectLoop, "message-queue-binary-selector");
+		selectorThread.setDaemon(true);
+		selectorThread.start();
+		log.info("Binary protocol listening on port {}. workers={}, virtualThreads={}", port,
+				workerCount, virtualThreads);
+	}
+
+	private ThreadFactory workerThreadFactory() {
+		AtomicInteger index = new AtomicInteger(1);
+		return r -> {
+			Thread t = new Thread(r, "message-queue-binary-" + index.getAndIncrement());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	private void selectLoop() {
+		while (running.get()) {
+			try {
+				selector.select();
+				BinaryConnection pending;
+				while ((pending = pendingWrites.poll()) != null) {
+					flush(pending);
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					BinaryConnection connection = (BinaryConnection) key.attachment();
+					if (key.isReadable()) {
+						read(connection);
+					}
+					if (key.isValid() && key.isWritable()) {
+						flush(connection);
+					}
+				}
+			} catch (IOException | ClosedSelectorException e) {
+				if (running.get()) {
+					log.warn("Binary selector error: {}", e.getMessage());
+				}
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		BinaryConnection connection = new BinaryConnection(channel, this::requestWrite);
+		connection.register(channel.register(selector, SelectionKey.OP_READ, connection));
+		log.debug("Binary client connected: {}", channel.getRemoteAddress());
+	}
+
+	private void read(BinaryConnection connection) {
+		try {
+			for (ByteBuffer frame : connection.read()) {
+				workers.execute(() -> handle(connection, frame));
+			}
+		} catch (IOException | RejectedExecutionException e) {
+			log.debug("Binary client disconnected: {}", e.getMessage());
+			connection.close();
+		}
+	}
+
+	private void flush(BinaryConnection connection) {
+		try {
+			connection.flush();
+		} catch (IOException | RuntimeException e) {
+			log.debug("Binary write failed: {}", e.getMessage());
+			connection.close();
+		}
+	}
+
+	private void requestWrite(BinaryConnection connection) {
+		pendingWrites.offer(connection);
+		selector.wakeup();
+	}
+
+	private void handle(BinaryConnection connection, ByteBuffer frame) {
+		if (frame.remaining() < BinaryProtocol.HEADER_LENGTH) {
+			respondError(connection, 0, new ResourceException(HttpStatus.BAD_REQUEST,
+					"Truncated frame of " + frame.remaining() + " bytes"));
+			return;
+		}
+		byte type = frame.get();
+		int correlationId = frame.getInt();
+		try {
+			if (type == BinaryProtocol.OPEN) {
+				open(connection, correlationId, frame);
+				return;
+			}
+			MessageQueueService queue = (type & BinaryProtocol.QUEUE_HANDLE) != 0
+					? connection.queue(frame.getShort()) : defaultQueue();
+			switch ((byte) (type & BinaryProtocol.TYPE_MASK)) {
+				case BinaryProtocol.PUT -> put(queue, connection, correlationId, frame);
+				case BinaryProtocol.POLL -> poll(queue, connection, correlationId, frame);
+				case BinaryProtocol.ACK -> ack(queue, connection, correlationId, frame);
+				case BinaryProtocol.METRIC -> metric(queue, connection, correlationId);
+				default -> throw new ResourceException(HttpStatus.BAD_REQUEST,
+						"Unknown frame type " + type);
+			}
+		} catch (RuntimeException e) {
+			respondError(connection, correlationId, e);
+		}
+	}
+
+	private MessageQueueService defaultQueue() {
+		return registry.resolve(MessageQueueRegistry.DEFAULT_QUEUE)
+		               .getQueue();
+	}
+
+	private void open(BinaryConnection connection, int correlationId, ByteBuffer frame) {
+		short handle = connection.open(registry.resolve(BinaryProtocol.readString(frame))
+		                                       .getQueue());
+		respond(connection, BinaryProtocol.OPEN, correlationId, out -> out.writeShort(handle));
+	}
+
+	private void put(MessageQueueService messageQueueService, BinaryConnection connection,
+			int correlationId, ByteBuffer frame) {
+		int count = frame.getInt();
+		if (count < 1 || count > frame.remaining()) {
+			throw new ResourceException(HttpStatus.BAD_REQUEST, "Malformed PUT batch size " + count);
+		}
+		List<Message> messages = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			messages.add(Message.builder()
+			                    .senderName(BinaryProtocol.readString(frame))
+			                    .content(BinaryProtocol.readString(frame))
+			                    .created(new Timestamp(frame.getLong()))
+			                    .build());
+		}
+		int accepted = messageQueueService.enqueueAll(messages);
+		respond(connection, BinaryProtocol.PUT, correlationId, out -> {
+			out.writeInt(count);
+			for (int i = 0; i < count; ++i) {
+				out.writeBoolean(i < accepted);
+			}
+		});
+	}
+
+	private void poll(MessageQueueService messageQueueService, BinaryConnection connection,
+			int correlationId, ByteBuffer frame) {
+		String consumerName = BinaryProtocol.readString(frame);
+		int max = frame.getInt();
+		long timeoutMs = frame.getLong();
+		messageQueueService.pollAsync(consumerName, max, timeoutMs).whenComplete((messages, e) -> {
+			if (e != null) {
+				respondError(connection, correlationId, e);
+				return;
+			}
+			respond(connection, BinaryProtocol.POLL, correlationId, out -> writeMessages(out, messages));
+		});
+	}
+
+	private void ack(MessageQueueService messageQueueService, BinaryConnection connection,
+			int correlationId, ByteBuffer frame) {
+		String consumerName = BinaryProtocol.readString(frame);
+		Status status = frame.get() == 0 ? Status.ACK : Status.NACK;
+		byte mode = frame.get();
+		List<Long> ids = null;
+		long upToId = 0L;
+		switch (mode) {
+			case BinaryProtocol.ACK_ALL -> {
+			}
+			case BinaryProtocol.ACK_IDS -> {
+				int count = frame.getInt();
+				if (count < 0 || count > frame.remaining() / Long.BYTES) {
+					throw new ResourceException(HttpStatus.BAD_REQUEST, "Malformed ACK id count " + count);
+				}
+				ids = new ArrayList<>(count);
+				for (int i = 0; i < count; ++i) {
+					ids.add(frame.getLong());
+				}
+			}
+			case BinaryProtocol.ACK_UP_TO -> upToId = frame.getLong();
+			default -> throw new ResourceException(HttpStatus.BAD_REQUEST, "Unknown ACK mode " + mode);
+		}
+		// Optional trailing retry delay for NACK; older clients stop before it.
+		Long retryDelayMs = null;
+		if (frame.remaining() >= Long.BYTES) {
+			long delay = frame.getLong();
+			retryDelayMs = delay < 0 ? null : delay;
+		}
+		switch (mode) {
+			case BinaryProtocol.ACK_IDS ->
+					messageQueueService.handleAck(consumerName, status, ids, retryDelayMs);
+			case BinaryProtocol.ACK_UP_TO ->
+					messageQueueService.handleAckUpTo(consumerName, status, upToId, retryDelayMs);
+			default -> messageQueueService.handleAck(consumerName, status, retryDelayMs);
+		}
+		respond(connection, BinaryProtocol.ACK, correlationId, out -> {
+		});
+	}
+
+	private void metric(MessageQueueService messageQueueService, BinaryConnection connection,
+			int correlationId) {
+		MessageQueueMetric metric = messageQueueService.getMetric();
+		respond(connection, BinaryProtocol.METRIC, correlationId, out -> {
+			out.writeInt(metric.capacity());
+			out.writeInt(metric.size());
+			out.writeLong(metric.expiredLeases());
+		});
+	}
+
+	private void writeMessages(DataOutputStream out, List<Message> messages) throws IOException {
+		out.writeInt(messages.size());
+		for (Message message : messages) {
+			out.writeLong(message.getId());
+			BinaryProtocol.writeString(out, message.getSenderName());
+			BinaryProtocol.writeString(out, message.getContent());
+			out.writeLong(message.getCreated() == null ? 0L : message.getCreated().getTime());
+		}
+	}
+
+	private void respond(BinaryConnection connection, byte type, int correlationId,
+			BinaryProtocol.PayloadWriter payload) {
+		connection.send(BinaryProtocol.encode((byte) (type | BinaryProtocol.RESPONSE), correlationId,
+				payload));
+	}
+
+	private void respondError(BinaryConnection connection, int correlationId, Throwable error) {
+		Throwable cause = error instanceof CompletionException && error.getCause() != null
+				? error.getCause() : error;
+		HttpStatus status = cause instanceof ResourceException resource ? resource.getStatus()
+				: cause instanceof IllegalArgumentException || cause instanceof BufferUnderflowException
+						? HttpStatus.BAD_REQUEST : HttpStatus.INTERNAL_SERVER_ERROR;
+		String message = cause.getMessage() == null ? status.getReasonPhrase() : cause.getMessage();
+		connection.send(BinaryProtocol.encode(BinaryProtocol.ERROR, correlationId, out -> {
+			out.writeShort(status.value());
+			BinaryProtocol.writeString(out, message);
+		}));
+	}
+
+	@Override
+	public void close() {
+		if (!running.compareAndSet(true, false)) {
+			return;
+		}
+		selector.wakeup();
+		try {
+			serverChannel.close();
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof BinaryConnection connection) {
+					connection.close();
+				}
+			}
+			selector.close();
+		} catch (IOException e) {
+			log.warn("Binary protocol shutdown error: {}", e.getMessage());
+		}
+		workers.shutdownNow();
+		log.info("Binary protocol shutting down...");
+	}
+}
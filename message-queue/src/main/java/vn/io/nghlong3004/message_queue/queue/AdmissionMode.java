@@ -0,0 +1,10 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+/**
+ * COUNT admits while the queue holds fewer messages than its capacity. BYTES also requires the
+ * payload bytes held by the queue to stay within the memory budget's watermarks.
+ */
+public enum AdmissionMode {
+	COUNT,
+	BYTES
+}
@@ -0,0 +1,81 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.Collection;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import vn.io.nghlong3004.message_queue.model.DelayedMessage;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+public class DelayQueueStore implements DelayStore {
+
+	private final DelayQueue<DelayedMessage> queue = new DelayQueue<>();
+	private final AtomicInteger size = new AtomicInteger();
+
+	@Override
+	public DelayedMessage offer(Message message, long delayMillis) {
+		DelayedMessage delayed = new DelayedMessage(message, delayMillis);
+		size.incrementAndGet();
+		queue.offer(delayed);
+		return delayed;
+	}
+
+	@Override
+	public boolean cancel(DelayedMessage delayed) {
+		if (!delayed.claim()) {
+			return false;
+		}
+		size.decrementAndGet();
+		return true;
+	}
+
+	@Override
+	public Message take() throws InterruptedException {
+		while (true) {
+			DelayedMessage delayed = queue.take();
+			if (delayed.claim()) {
+				size.decrementAndGet();
+				return delayed.getMessage();
+			}
+		}
+	}
+
+	@Override
+	public int drainDue(Collection<? super Message> sink, int max) {
+		int drained = 0;
+		DelayedMessage delayed;
+		while (drained < max && (delayed = queue.poll()) != null) {
+			if (delayed.claim()) {
+				size.decrementAndGet();
+				sink.add(delayed.getMessage());
+				++drained;
+			}
+		}
+		return drained;
+	}
+
+	@Override
+	public int drainAll(Collection<? super DelayedMessage> sink) {
+		int drained = 0;
+		for (DelayedMessage delayed : queue) {
+			if (delayed.claim()) {
+				size.decrementAndGet();
+				sink.add(delayed);
+				++drained;
+			}
+		}
+		queue.clear();
+		return drained;
+	}
+
+	@Override
+	public long nanosUntilNextDue() {
+		DelayedMessage head = queue.peek();
+		return head == null ? Long.MAX_VALUE : head.getDelay(TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+}
@@ -0,0 +1,27 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.Collection;
+import vn.io.nghlong3004.message_queue.model.DelayedMessage;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+public interface DelayStore {
+
+	DelayedMessage offer(Message message, long delayMillis);
+
+	/**
+	 * Withdraws an entry returned by {@link #offer} in O(1): the claim flag is flipped and the node
+	 * is dropped when the store next reaches it. Returns false if it was already taken.
+	 */
+	boolean cancel(DelayedMessage delayed);
+
+	Message take() throws InterruptedException;
+
+	int drainDue(Collection<? super Message> sink, int max);
+
+	int drainAll(Collection<? super DelayedMessage> sink);
+
+	long nanosUntilNextDue();
+
+	int size();
+
+}
@@ -0,0 +1,104 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+/**
+ * Ready messages shared by every consumer group of a queue. Each message is stored once, at an
+ * increasing position; a group reads forward with its own cursor and the entry is removed when the
+ * last group releases it.
+ */
+public class FanOutLog {
+
+	private final ConcurrentSkipListMap<Long, Entry> entries = new ConcurrentSkipListMap<>();
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicInteger size = new AtomicInteger();
+	private final int groups;
+
+	public FanOutLog(int groups) {
+		this.groups = groups;
+	}
+
+	public long append(Message message) {
+		long position = tail.getAndIncrement();
+		size.incrementAndGet();
+		entries.put(position, new Entry(position, message, groups));
+		return position;
+	}
+
+	/**
+	 * Advances {@code cursor} past the next entry and returns it, or returns null when the cursor has
+	 * caught up. A position that is reserved but not yet published stops the cursor rather than being
+	 * skipped.
+	 */
+	public Entry claim(AtomicLong cursor) {
+		while (true) {
+			long position = cursor.get();
+			if (position >= tail.get()) {
+				return null;
+			}
+			Entry entry = entries.get(position);
+			if (entry == null) {
+				return null;
+			}
+			if (cursor.compareAndSet(position, position + 1)) {
+				return entry;
+			}
+		}
+	}
+
+	public boolean hasNext(long cursor) {
+		return cursor < tail.get();
+	}
+
+	/**
+	 * Drops one group's reference. Returns the entry once no group references it any more, otherwise
+	 * null. {@code failed} marks the entry as given up on by at least one group.
+	 */
+	public Entry release(long position, boolean failed) {
+		Entry entry = entries.get(position);
+		if (entry == null) {
+			return null;
+		}
+		if (failed) {
+			entry.failed = true;
+		}
+		if (entry.references.decrementAndGet() > 0) {
+			return null;
+		}
+		entries.remove(position);
+		size.decrementAndGet();
+		return entry;
+	}
+
+	public Collection<Entry> entries() {
+		return entries.values();
+	}
+
+	public long tail() {
+		return tail.get();
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	@Getter
+	public static final class Entry {
+
+		private final long position;
+		private final Message message;
+		private final AtomicInteger references;
+		private volatile boolean failed;
+
+		private Entry(long position, Message message, int references) {
+			this.position = position;
+			this.message = message;
+			this.references = new AtomicInteger(references);
+		}
+	}
+}
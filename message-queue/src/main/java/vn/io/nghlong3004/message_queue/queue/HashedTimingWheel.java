@@ -0,0 +1,195 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import vn.io.nghlong3004.message_queue.model.DelayedMessage;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+/**
+ * Hashed timing wheel. Producers only append to a lock-free inbox; whoever drains moves the inbox
+ * into buckets and expires every bucket between the last and the current tick. Entries more than
+ * one revolution away stay in their bucket until their own tick comes around. Cancellation flips
+ * the entry's claim flag and the node is dropped the next time its bucket is visited.
+ */
+public class HashedTimingWheel implements DelayStore {
+
+	private final long tickNanos;
+	private final int mask;
+	private final ArrayDeque<DelayedMessage>[] buckets;
+	private final ConcurrentLinkedQueue<DelayedMessage> inbox = new ConcurrentLinkedQueue<>();
+	private final ArrayDeque<DelayedMessage> due = new ArrayDeque<>();
+	private final ReentrantLock advanceLock = new ReentrantLock();
+	private final AtomicInteger size = new AtomicInteger();
+	private final long startNanos = System.nanoTime();
+	private long nextTick;
+
+	@SuppressWarnings("unchecked")
+	public HashedTimingWheel(long tickMillis, int requestedWheelSize) {
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, tickMillis));
+		int wheelSize = Integer.highestOneBit(Math.max(2, requestedWheelSize) - 1) << 1;
+		this.mask = wheelSize - 1;
+		this.buckets = new ArrayDeque[wheelSize];
+		for (int i = 0; i < wheelSize; ++i) {
+			buckets[i] = new ArrayDeque<>();
+		}
+	}
+
+	@Override
+	public DelayedMessage offer(Message message, long delayMillis) {
+		DelayedMessage delayed = new DelayedMessage(message, delayMillis);
+		size.incrementAndGet();
+		inbox.offer(delayed);
+		return delayed;
+	}
+
+	@Override
+	public boolean cancel(DelayedMessage delayed) {
+		if (!delayed.claim()) {
+			return false;
+		}
+		size.decrementAndGet();
+		return true;
+	}
+
+	@Override
+	public Message take() throws InterruptedException {
+		List<Message> one = new ArrayList<>(1);
+		while (drainDue(one, 1) == 0) {
+			LockSupport.parkNanos(this, tickNanos);
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+		return one.get(0);
+	}
+
+	@Override
+	public int drainDue(Collection<? super Message> sink, int max) {
+		advanceLock.lock();
+		try {
+			advance(System.nanoTime());
+			int drained = 0;
+			DelayedMessage delayed;
+			while (drained < max && (delayed = due.pollFirst()) != null) {
+				if (delayed.claim()) {
+					size.decrementAndGet();
+					sink.add(delayed.getMessage());
+					++drained;
+				}
+			}
+			return drained;
+		} finally {
+			advanceLock.unlock();
+		}
+	}
+
+	@Override
+	public int drainAll(Collection<? super DelayedMessage> sink) {
+		advanceLock.lock();
+		try {
+			advance(System.nanoTime());
+			int drained = claimAll(due, sink);
+			for (ArrayDeque<DelayedMessage> bucket : buckets) {
+				drained += claimAll(bucket, sink);
+			}
+			return drained;
+		} finally {
+			advanceLock.unlock();
+		}
+	}
+
+	private int claimAll(ArrayDeque<DelayedMessage> entries, Collection<? super DelayedMessage> sink) {
+		int claimed = 0;
+		DelayedMessage delayed;
+		while ((delayed = entries.pollFirst()) != null) {
+			if (delayed.claim()) {
+				size.decrementAndGet();
+				sink.add(delayed);
+				++claimed;
+			}
+		}
+		return claimed;
+	}
+
+	/**
+	 * Distance to the start of the earliest occupied bucket. An entry more than one revolution away
+	 * shares its bucket with nearer ticks, and a cancelled entry occupies its bucket until visited,
+	 * so the answer may be early but is never late.
+	 */
+	@Override
+	public long nanosUntilNextDue() {
+		if (size.get() == 0) {
+			return Long.MAX_VALUE;
+		}
+		advanceLock.lock();
+		try {
+			long nowNanos = System.nanoTime();
+			advance(nowNanos);
+			if (!due.isEmpty()) {
+				return 0L;
+			}
+			for (long tick = nextTick; tick <= nextTick + mask; ++tick) {
+				if (!buckets[(int) (tick & mask)].isEmpty()) {
+					return Math.max(0L, startNanos + tick * tickNanos - nowNanos);
+				}
+			}
+			return Long.MAX_VALUE;
+		} finally {
+			advanceLock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		return size.get();
+	}
+
+	private void advance(long nowNanos) {
+		long nowTick = tickOf(nowNanos);
+
+		DelayedMessage delayed;
+		while ((delayed = inbox.poll()) != null) {
+			if (delayed.isClaimed()) {
+				continue;
+			}
+			long tick = tickOf(delayed.getReadyAtNanos());
+			if (tick < nextTick) {
+				due.addLast(delayed);
+			} else {
+				buckets[(int) (tick & mask)].addLast(delayed);
+			}
+		}
+
+		// One full revolution visits every bucket, so a long pause never costs more than that.
+		long fromTick = Math.max(nextTick, nowTick - mask);
+		for (long tick = fromTick; tick <= nowTick; ++tick) {
+			expire(buckets[(int) (tick & mask)], nowTick);
+		}
+		nextTick = Math.max(nextTick, nowTick + 1);
+	}
+
+	private void expire(ArrayDeque<DelayedMessage> bucket, long nowTick) {
+		for (int i = bucket.size(); i > 0; --i) {
+			DelayedMessage delayed = bucket.pollFirst();
+			if (delayed.isClaimed()) {
+				continue;
+			}
+			if (tickOf(delayed.getReadyAtNanos()) <= nowTick) {
+				due.addLast(delayed);
+			} else {
+				bucket.addLast(delayed);
+			}
+		}
+	}
+
+	private long tickOf(long nanos) {
+		return (nanos - startNanos) / tickNanos;
+	}
+}
@@ -0,0 +1,86 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import vn.io.nghlong3004.message_queue.model.LeaseExpiry;
+
+/**
+ * Hashed timing wheel for lease deadlines. An entry's bucket follows from its deadline, so a settled
+ * or extended lease is cancelled with an O(1) removal of an equal key instead of lingering until its
+ * deadline. A deadline that lands on a bucket the reaper has already passed goes to an overdue set
+ * that is drained on the next pass.
+ */
+public class LeaseTimer {
+
+	private final long tickNanos;
+	private final int mask;
+	private final Set<LeaseExpiry>[] buckets;
+	private final Set<LeaseExpiry> overdue = ConcurrentHashMap.newKeySet();
+	private final long startNanos = System.nanoTime();
+	private volatile long lastTick;
+
+	@SuppressWarnings("unchecked")
+	public LeaseTimer(long tickMillis, int requestedWheelSize) {
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, tickMillis));
+		int wheelSize = Integer.highestOneBit(Math.max(2, requestedWheelSize) - 1) << 1;
+		this.mask = wheelSize - 1;
+		this.buckets = new Set[wheelSize];
+		for (int i = 0; i < wheelSize; ++i) {
+			buckets[i] = ConcurrentHashMap.newKeySet();
+		}
+	}
+
+	public void schedule(LeaseExpiry expiry) {
+		long tick = tickOf(expiry.getExpiresAtNanos());
+		if (tick < lastTick) {
+			overdue.add(expiry);
+			return;
+		}
+		Set<LeaseExpiry> bucket = buckets[(int) (tick & mask)];
+		bucket.add(expiry);
+		// The reaper may have moved past this tick while we were adding.
+		if (tick < lastTick && bucket.remove(expiry)) {
+			overdue.add(expiry);
+		}
+	}
+
+	public void cancel(LeaseExpiry expiry) {
+		if (!buckets[(int) (tickOf(expiry.getExpiresAtNanos()) & mask)].remove(expiry)) {
+			overdue.remove(expiry);
+		}
+	}
+
+	/**
+	 * Removes every entry whose deadline has passed and hands it to {@code sink}. Must only be called
+	 * from one thread. The current tick's bucket is visited again on the next call, so nothing fires
+	 * early and nothing due is skipped.
+	 */
+	public void expire(long nowNanos, Consumer<LeaseExpiry> sink) {
+		long nowTick = tickOf(nowNanos);
+		drain(overdue, nowNanos, sink);
+		for (long tick = Math.max(lastTick, nowTick - mask); tick <= nowTick; ++tick) {
+			drain(buckets[(int) (tick & mask)], nowNanos, sink);
+		}
+		lastTick = nowTick;
+	}
+
+	public long getTickNanos() {
+		return tickNanos;
+	}
+
+	private static void drain(Set<LeaseExpiry> entries, long nowNanos, Consumer<LeaseExpiry> sink) {
+		for (Iterator<LeaseExpiry> it = entries.iterator(); it.hasNext(); ) {
+			LeaseExpiry expiry = it.next();
+			if (expiry.getExpiresAtNanos() - nowNanos <= 0 && entries.remove(expiry)) {
+				sink.accept(expiry);
+			}
+		}
+	}
+
+	private long tickOf(long nanos) {
+		return Math.floorDiv(nanos - startNanos, tickNanos);
+	}
+}
@@ -0,0 +1,104 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+/**
+ * One lock-free FIFO per priority level plus a bitmap of levels that may be non-empty. A dequeue
+ * reads the highest set bit and polls that level, so it costs O(1) instead of a heap's O(log n),
+ * and {@code created} plays no part in ordering.
+ * <p>
+ * With a positive starvation interval, every n-th dequeue skips the highest level and serves the
+ * next waiting level below the one aged last, wrapping around, so every lower level keeps draining
+ * under sustained high-priority load. A bit may stay set briefly after its level empties; a poller that finds the
+ * level empty clears it and re-checks.
+ */
+public class MultiLevelReadyQueue implements ReadyQueue {
+
+	public static final int LEVELS = 10;
+
+	private final ConcurrentLinkedQueue<Message>[] levels;
+	private final AtomicInteger nonEmpty = new AtomicInteger();
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong dequeues = new AtomicLong();
+	private final AtomicInteger agedLevel = new AtomicInteger(LEVELS);
+	private final int starvationInterval;
+
+	@SuppressWarnings("unchecked")
+	public MultiLevelReadyQueue(int starvationInterval) {
+		this.starvationInterval = Math.max(0, starvationInterval);
+		this.levels = new ConcurrentLinkedQueue[LEVELS];
+		for (int i = 0; i < LEVELS; ++i) {
+			levels[i] = new ConcurrentLinkedQueue<>();
+		}
+	}
+
+	@Override
+	public boolean offer(Message message) {
+		int level = Math.max(0, Math.min(LEVELS - 1, message.getPriority()));
+		levels[level].offer(message);
+		size.incrementAndGet();
+		int bit = 1 << level;
+		if ((nonEmpty.get() & bit) == 0) {
+			nonEmpty.getAndUpdate(bitmap -> bitmap | bit);
+		}
+		return true;
+	}
+
+	@Override
+	public Message poll() {
+		int bitmap;
+		while ((bitmap = nonEmpty.get()) != 0) {
+			int level = pick(bitmap);
+			Message message = levels[level].poll();
+			if (message != null) {
+				size.decrementAndGet();
+				return message;
+			}
+			int bit = 1 << level;
+			nonEmpty.getAndUpdate(current -> current & ~bit);
+			if (!levels[level].isEmpty()) {
+				nonEmpty.getAndUpdate(current -> current | bit);
+			}
+		}
+		return null;
+	}
+
+	private int pick(int bitmap) {
+		int top = highest(bitmap);
+		if (starvationInterval == 0 || dequeues.incrementAndGet() % starvationInterval != 0) {
+			return top;
+		}
+		int waiting = bitmap & ~(1 << top);
+		if (waiting == 0) {
+			return top;
+		}
+		int below = waiting & ((1 << agedLevel.get()) - 1);
+		int level = highest(below != 0 ? below : waiting);
+		agedLevel.set(level);
+		return level;
+	}
+
+	private static int highest(int bitmap) {
+		return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(bitmap);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message> sink, int max) {
+		int drained = 0;
+		Message message;
+		while (drained < max && (message = poll()) != null) {
+			sink.add(message);
+			++drained;
+		}
+		return drained;
+	}
+
+	@Override
+	public int size() {
+		return Math.max(0, size.get());
+	}
+}
@@ -0,0 +1,46 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+abstract class PaddedSequenceLhs {
+
+	long p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class PaddedSequenceValue extends PaddedSequenceLhs {
+
+	volatile long value;
+}
+
+/**
+ * A volatile long kept on its own cache line, so the producer and consumer cursors of a ring do not
+ * false-share with each other or with neighbouring objects.
+ */
+final class PaddedSequence extends PaddedSequenceValue {
+
+	private static final VarHandle VALUE;
+
+	static {
+		try {
+			VALUE = MethodHandles.lookup()
+			                     .findVarHandle(PaddedSequenceValue.class, "value", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	long p11, p12, p13, p14, p15, p16, p17;
+
+	long get() {
+		return value;
+	}
+
+	boolean compareAndSet(long expected, long next) {
+		return VALUE.compareAndSet(this, expected, next);
+	}
+
+	void add(long delta) {
+		VALUE.getAndAdd(this, delta);
+	}
+}
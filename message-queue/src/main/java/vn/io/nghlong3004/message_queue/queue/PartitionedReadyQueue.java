@@ -0,0 +1,101 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+/**
+ * Splits the READY set into independent partitions so producers and consumers stop contending on a
+ * single queue. A message lands in the partition picked by its sender's hash; a consumer drains the
+ * partition picked by its own name first and then steals from the others, so nothing is stranded in
+ * a partition without a home consumer. Order is only kept within a partition.
+ */
+public class PartitionedReadyQueue implements ReadyQueue {
+
+	private final ReadyQueue[] partitions;
+	private final PaddedSequence[] sizes;
+
+	public PartitionedReadyQueue(int partitionCount, Supplier<ReadyQueue> factory) {
+		this.partitions = new ReadyQueue[partitionCount];
+		this.sizes = new PaddedSequence[partitionCount];
+		for (int i = 0; i < partitionCount; ++i) {
+			partitions[i] = factory.get();
+			sizes[i] = new PaddedSequence();
+		}
+	}
+
+	@Override
+	public boolean offer(Message message) {
+		int home = indexOf(message.getSenderName());
+		for (int i = 0; i < partitions.length; ++i) {
+			int index = (home + i) % partitions.length;
+			if (partitions[index].offer(message)) {
+				sizes[index].add(1);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Message poll() {
+		int start = ThreadLocalRandom.current()
+		                             .nextInt(partitions.length);
+		for (int i = 0; i < partitions.length; ++i) {
+			int index = (start + i) % partitions.length;
+			Message message = partitions[index].poll();
+			if (message != null) {
+				sizes[index].add(-1);
+				return message;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message> sink, int max) {
+		return drainFrom(ThreadLocalRandom.current()
+		                                  .nextInt(partitions.length), sink, max);
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message> sink, int max, String consumerName) {
+		return drainFrom(indexOf(consumerName), sink, max);
+	}
+
+	private int drainFrom(int home, Collection<? super Message> sink, int max) {
+		int drained = 0;
+		for (int i = 0; i < partitions.length && drained < max; ++i) {
+			int index = (home + i) % partitions.length;
+			if (sizes[index].get() <= 0) {
+				continue;
+			}
+			int taken = partitions[index].drainTo(sink, max - drained);
+			sizes[index].add(-taken);
+			drained += taken;
+		}
+		return drained;
+	}
+
+	@Override
+	public int size() {
+		long size = 0;
+		for (PaddedSequence partitionSize : sizes) {
+			size += partitionSize.get();
+		}
+		return (int) Math.max(0, size);
+	}
+
+	public int partitionCount() {
+		return partitions.length;
+	}
+
+	private int indexOf(String key) {
+		if (key == null) {
+			return 0;
+		}
+		int hash = key.hashCode();
+		return Math.floorMod(hash ^ (hash >>> 16), partitions.length);
+	}
+}
@@ -0,0 +1,138 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Off-heap store for message content, carved out of direct-buffer slabs so a large backlog does not
+ * add to the live set every GC cycle scans. A stored payload is addressed by a {@code long} handle
+ * (slab index in the high half, offset in the low half) and occupies a power-of-two block holding a
+ * length prefix and the UTF-8 bytes. Freed blocks go to a free list per block size and are reused
+ * before a new slab is carved; slabs themselves are never returned.
+ */
+public class PayloadArena {
+
+	public static final long NONE = -1L;
+
+	private static final int MIN_BLOCK_SHIFT = 5;
+
+	private final int slabBytes;
+	private final int maxSlabs;
+	private final SizeClass[] classes;
+	private final AtomicLong usedBytes = new AtomicLong();
+
+	private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+	private int slabOffset;
+
+	/**
+	 * @param slabBytes size of each direct buffer, rounded up to a power of two; payloads that do not
+	 *                  fit in one slab stay on the heap
+	 * @param maxBytes  upper bound on reserved off-heap memory; once reached, new payloads stay on the
+	 *                  heap until blocks are freed
+	 */
+	public PayloadArena(int slabBytes, long maxBytes) {
+		int shift = Math.max(MIN_BLOCK_SHIFT, 32 - Integer.numberOfLeadingZeros(slabBytes - 1));
+		this.slabBytes = 1 << Math.min(shift, 30);
+		this.maxSlabs = (int) Math.max(1L, Math.min(Integer.MAX_VALUE, maxBytes / this.slabBytes));
+		this.classes = new SizeClass[Integer.numberOfTrailingZeros(this.slabBytes) + 1];
+		for (int i = MIN_BLOCK_SHIFT; i < classes.length; ++i) {
+			classes[i] = new SizeClass();
+		}
+	}
+
+	/**
+	 * Copies {@code content} off-heap. Returns {@link #NONE} when it is too large for a slab or the
+	 * arena is at its limit, in which case the caller keeps the string.
+	 */
+	public long store(String content) {
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		int block = Integer.BYTES + bytes.length;
+		if (block > slabBytes) {
+			return NONE;
+		}
+		int shift = shift(block);
+		long handle = classes[shift].pop();
+		if (handle == NONE) {
+			handle = carve(1 << shift);
+			if (handle == NONE) {
+				return NONE;
+			}
+		}
+		ByteBuffer slab = slabs[(int) (handle >>> 32)];
+		int offset = (int) handle;
+		slab.putInt(offset, bytes.length);
+		slab.put(offset + Integer.BYTES, bytes);
+		usedBytes.addAndGet(1L << shift);
+		return handle;
+	}
+
+	public String read(long handle) {
+		ByteBuffer slab = slabs[(int) (handle >>> 32)];
+		int offset = (int) handle;
+		int length = slab.getInt(offset);
+		byte[] bytes = new byte[length];
+		slab.get(offset + Integer.BYTES, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public void free(long handle) {
+		ByteBuffer slab = slabs[(int) (handle >>> 32)];
+		int shift = shift(Integer.BYTES + slab.getInt((int) handle));
+		classes[shift].push(handle);
+		usedBytes.addAndGet(-(1L << shift));
+	}
+
+	/**
+	 * Bytes in blocks currently holding a payload.
+	 */
+	public long getUsedBytes() {
+		return usedBytes.get();
+	}
+
+	/**
+	 * Bytes of direct memory reserved by slabs.
+	 */
+	public long getReservedBytes() {
+		return (long) slabs.length * slabBytes;
+	}
+
+	private synchronized long carve(int block) {
+		ByteBuffer[] current = slabs;
+		if (current.length == 0 || slabOffset + block > slabBytes) {
+			if (current.length == maxSlabs) {
+				return NONE;
+			}
+			ByteBuffer[] grown = Arrays.copyOf(current, current.length + 1);
+			grown[current.length] = ByteBuffer.allocateDirect(slabBytes);
+			slabs = grown;
+			current = grown;
+			slabOffset = 0;
+		}
+		long handle = ((long) (current.length - 1) << 32) | slabOffset;
+		slabOffset += block;
+		return handle;
+	}
+
+	private static int shift(int block) {
+		return Math.max(MIN_BLOCK_SHIFT, 32 - Integer.numberOfLeadingZeros(block - 1));
+	}
+
+	private static final class SizeClass {
+
+		private long[] free = new long[16];
+		private int count;
+
+		synchronized long pop() {
+			return count == 0 ? NONE : free[--count];
+		}
+
+		synchronized void push(long handle) {
+			if (count == free.length) {
+				free = Arrays.copyOf(free, count * 2);
+			}
+			free[count++] = handle;
+		}
+	}
+}
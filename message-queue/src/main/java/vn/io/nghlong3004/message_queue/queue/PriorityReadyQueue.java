@@ -0,0 +1,34 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.PriorityBlockingQueue;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+public class PriorityReadyQueue implements ReadyQueue {
+
+	private final PriorityBlockingQueue<Message> queue = new PriorityBlockingQueue<>(1 << 10,
+			Comparator.comparingInt(Message::getPriority)
+			          .reversed()
+			          .thenComparing(Message::getCreated));
+
+	@Override
+	public boolean offer(Message message) {
+		return queue.offer(message);
+	}
+
+	@Override
+	public Message poll() {
+		return queue.poll();
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message> sink, int max) {
+		return queue.drainTo(sink, max);
+	}
+
+	@Override
+	public int size() {
+		return queue.size();
+	}
+}
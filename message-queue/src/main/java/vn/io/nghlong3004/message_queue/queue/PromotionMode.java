@@ -0,0 +1,6 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+public enum PromotionMode {
+	THREAD,
+	LAZY
+}
@@ -0,0 +1,7 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+public enum ReadyEngine {
+	PRIORITY,
+	RING,
+	LEVELS
+}
@@ -0,0 +1,20 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.Collection;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+public interface ReadyQueue {
+
+	boolean offer(Message message);
+
+	Message poll();
+
+	int drainTo(Collection<? super Message> sink, int max);
+
+	default int drainTo(Collection<? super Message> sink, int max, String consumerName) {
+		return drainTo(sink, max);
+	}
+
+	int size();
+
+}
@@ -0,0 +1,94 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+/**
+ * Bounded lock-free multi-producer/multi-consumer ring (Vyukov style). Every slot carries a sequence
+ * number telling producers and consumers whose turn it is, so neither side ever takes a lock.
+ * Ordering is FIFO by promotion, which matches creation order while the delay is a single constant.
+ */
+public class RingBufferReadyQueue implements ReadyQueue {
+
+	private final int mask;
+	private final AtomicReferenceArray<Message> slots;
+	private final AtomicLongArray sequences;
+	private final PaddedSequence enqueuePosition = new PaddedSequence();
+	private final PaddedSequence dequeuePosition = new PaddedSequence();
+
+	public RingBufferReadyQueue(int requestedCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity) - 1) << 1;
+		this.mask = capacity - 1;
+		this.slots = new AtomicReferenceArray<>(capacity);
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; ++i) {
+			sequences.set(i, i);
+		}
+	}
+
+	@Override
+	public boolean offer(Message message) {
+		long position = enqueuePosition.get();
+		while (true) {
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (enqueuePosition.compareAndSet(position, position + 1)) {
+					slots.set(index, message);
+					sequences.set(index, position + 1);
+					return true;
+				}
+				position = enqueuePosition.get();
+			} else if (difference < 0) {
+				return false;
+			} else {
+				position = enqueuePosition.get();
+			}
+		}
+	}
+
+	@Override
+	public Message poll() {
+		long position = dequeuePosition.get();
+		while (true) {
+			int index = (int) (position & mask);
+			long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (dequeuePosition.compareAndSet(position, position + 1)) {
+					Message message = slots.get(index);
+					slots.set(index, null);
+					sequences.set(index, position + mask + 1);
+					return message;
+				}
+				position = dequeuePosition.get();
+			} else if (difference < 0) {
+				return null;
+			} else {
+				position = dequeuePosition.get();
+			}
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message> sink, int max) {
+		int drained = 0;
+		Message message;
+		while (drained < max && (message = poll()) != null) {
+			sink.add(message);
+			++drained;
+		}
+		return drained;
+	}
+
+	@Override
+	public int size() {
+		long size = enqueuePosition.get() - dequeuePosition.get();
+		return (int) Math.max(0, Math.min(size, mask + 1L));
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+}
@@ -0,0 +1,66 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import java.util.concurrent.atomic.LongAdder;
+import vn.io.nghlong3004.message_queue.model.MessageStatus;
+
+/**
+ * Live message counts per status and the payload bytes they hold, kept in striped adders so
+ * producers, consumers and the promoter update them without contending on one cache line. Reading
+ * the queue size never touches the underlying stores. Dead letters are counted by the dead-letter store, not here.
+ */
+public class StateCounters {
+
+	private final LongAdder notReady = new LongAdder();
+	private final LongAdder ready = new LongAdder();
+	private final LongAdder inProgress = new LongAdder();
+	private final LongAdder payloadBytes = new LongAdder();
+
+	public void increment(MessageStatus status) {
+		add(status, 1);
+	}
+
+	public void decrement(MessageStatus status) {
+		add(status, -1);
+	}
+
+	public void add(MessageStatus status, int delta) {
+		LongAdder adder = adder(status);
+		if (adder != null) {
+			adder.add(delta);
+		}
+	}
+
+	public void move(MessageStatus from, MessageStatus to) {
+		add(to, 1);
+		add(from, -1);
+	}
+
+	public int get(MessageStatus status) {
+		LongAdder adder = adder(status);
+		return adder == null ? 0 : (int) Math.max(0, adder.sum());
+	}
+
+	public void addBytes(long delta) {
+		payloadBytes.add(delta);
+	}
+
+	public long bytes() {
+		return Math.max(0L, payloadBytes.sum());
+	}
+
+	public int size() {
+		return (int) Math.max(0, notReady.sum() + ready.sum() + inProgress.sum());
+	}
+
+	private LongAdder adder(MessageStatus status) {
+		if (status == null) {
+			return null;
+		}
+		return switch (status) {
+			case NOT_READY -> notReady;
+			case READY -> ready;
+			case IN_PROGRESS -> inProgress;
+			default -> null;
+		};
+	}
+}
@@ -0,0 +1,227 @@
+package vn.io.nghlong3004.message_queue.registry;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import vn.io.nghlong3004.message_queue.exception.ResourceException;
+import vn.io.nghlong3004.message_queue.metrics.QueueMetrics;
+import vn.io.nghlong3004.message_queue.queue.AdmissionMode;
+import vn.io.nghlong3004.message_queue.queue.DelayEngine;
+import vn.io.nghlong3004.message_queue.queue.PromotionMode;
+import vn.io.nghlong3004.message_queue.queue.ReadyEngine;
+import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+import vn.io.nghlong3004.message_queue.service.impl.MessageQueueImpl;
+import vn.io.nghlong3004.message_queue.service.impl.MessageQueueScalerImpl;
+
+/**
+ * Creates queues on first use. Each setting is read from {@code message-queue.queues.<name>.<key>}
+ * and falls back to {@code message-queue.<key>}. Lookups of existing queues are a plain
+ * {@link ConcurrentHashMap#get}; only the first use of a name takes the creation path.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MessageQueueRegistry implements AutoCloseable {
+
+	public static final String DEFAULT_QUEUE = "default";
+
+	private static final Pattern NAME = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+	private final Environment environment;
+	private final MeterRegistry meterRegistry;
+	private final ConcurrentMap<String, NamedQueue> queues = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, NamedQueue> groups = new ConcurrentHashMap<>();
+
+	private NamedQueue defaultQueue;
+	private int maxQueues;
+
+	@PostConstruct
+	void init() {
+		maxQueues = environment.getRequiredProperty("message-queue.registry.max-queues", Integer.class);
+		defaultQueue = resolve(DEFAULT_QUEUE);
+		for (String name : environment.getProperty("message-queue.registry.preload", String[].class,
+				new String[0])) {
+			if (!name.isBlank()) {
+				resolve(name.trim());
+			}
+		}
+	}
+
+	public NamedQueue resolve(String name) {
+		if (name == null || name.isEmpty()) {
+			return defaultQueue;
+		}
+		int colon = name.indexOf(':');
+		if (colon >= 0) {
+			return resolveGroup(name, colon);
+		}
+		NamedQueue queue = queues.get(name);
+		if (queue != null) {
+			return queue;
+		}
+		if (!NAME.matcher(name)
+		         .matches()) {
+			throw new ResourceException(HttpStatus.BAD_REQUEST, "Invalid queue name " + name);
+		}
+		return queues.computeIfAbsent(name, this::create);
+	}
+
+	/**
+	 * {@code <queue>:<group>} addresses one consumer group of a fan-out queue. The view shares the
+	 * queue's scaler and is cached so later lookups stay a single map read.
+	 */
+	private NamedQueue resolveGroup(String name, int colon) {
+		NamedQueue view = groups.get(name);
+		if (view != null) {
+			return view;
+		}
+		NamedQueue parent = resolve(name.substring(0, colon));
+		MessageQueueService group = parent.getQueue()
+		                                  .group(name.substring(colon + 1));
+		return groups.computeIfAbsent(name, k -> new NamedQueue(k, group, parent.getScaler()));
+	}
+
+	public Collection<NamedQueue> all() {
+		return List.copyOf(queues.values());
+	}
+
+	private NamedQueue create(String name) {
+		if (queues.size() >= maxQueues) {
+			throw new ResourceException(HttpStatus.BAD_REQUEST,
+					"Queue limit of " + maxQueues + " reached");
+		}
+		QueueSettings settings = settings(name);
+		QueueMetrics metrics = new QueueMetrics(meterRegistry, name);
+		MessageQueueImpl queue = new MessageQueueImpl(settings, metrics);
+		queue.init();
+		log.info("Queue '{}' created. capacity={}, delayMillis={}ms, groups={}", name,
+				settings.getCapacity(), settings.getDelayMillis(), settings.getGroups());
+		return new NamedQueue(name, queue, new MessageQueueScalerImpl(queue, settings, metrics));
+	}
+
+	private QueueSettings settings(String name) {
+		boolean isDefault = DEFAULT_QUEUE.equals(name);
+		String walDir = get(name, "wal.dir", String.class);
+		String snapshotPath = get(name, "snapshot.path", String.class);
+		if (!isDefault && !hasOverride(name, "wal.dir")) {
+			walDir = Path.of(walDir, name)
+			             .toString();
+		}
+		if (!isDefault && !hasOverride(name, "snapshot.path")) {
+			Path path = Path.of(snapshotPath);
+			String file = path.getFileName()
+			                  .toString();
+			int dot = file.lastIndexOf('.');
+			String renamed = dot < 0 ? file + "-" + name
+					: file.substring(0, dot) + "-" + name + file.substring(dot);
+			snapshotPath = path.resolveSibling(renamed)
+			                   .toString();
+		}
+
+		return QueueSettings.builder()
+		                    .name(name)
+		                    .enqueueTimeoutMs(get(name, "enqueue-timeout-ms", Long.class))
+		                    .delayMillis(get(name, "delay-ms", Long.class))
+		                    .capacity(get(name, "capacity", Integer.class))
+		                    .admission(get(name, "admission", AdmissionMode.class))
+		                    .memoryBudgetBytes(get(name, "memory.budget-bytes", Long.class))
+		                    .memoryHighWatermark(get(name, "memory.high-watermark", Double.class))
+		                    .memoryLowWatermark(get(name, "memory.low-watermark", Double.class))
+		                    .readyEngine(get(name, "ready-engine", ReadyEngine.class))
+		                    .ringSize(get(name, "ready-engine.ring-size", Integer.class))
+		                    .partitions(get(name, "ready-engine.partitions", Integer.class))
+		                    .starvationInterval(get(name, "ready-engine.starvation-interval", Integer.class))
+		                    .promotionMode(get(name, "promotion", PromotionMode.class))
+		                    .promotionBatchSize(get(name, "promotion.batch-size", Integer.class))
+		                    .delayEngine(get(name, "delay-engine", DelayEngine.class))
+		                    .wheelTickMs(get(name, "delay-engine.wheel-tick-ms", Long.class))
+		                    .wheelSize(get(name, "delay-engine.wheel-size", Integer.class))
+		                    .maxInFlight(get(name, "consumer.max-in-flight", Integer.class))
+		                    .visibilityTimeoutMs(get(name, "lease.visibility-timeout-ms", Long.class))
+		                    .maxDeliveries(get(name, "dlq.max-deliveries", Integer.class))
+		                    .retryBaseDelayMs(get(name, "retry.base-delay-ms", Long.class))
+		                    .retryMaxDelayMs(get(name, "retry.max-delay-ms", Long.class))
+		                    .retryMultiplier(get(name, "retry.multiplier", Double.class))
+		                    .retryJitter(get(name, "retry.jitter", Double.class))
+		                    .deadLetterCapacity(get(name, "dlq.capacity", Integer.class))
+		                    .groups(groups(name))
+		                    .latencyWindowMs(get(name, "metrics.latency-window-ms", Long.class))
+		                    .metricSnapshotMs(get(name, "metrics.snapshot-interval-ms", Long.class))
+		                    .walEnabled(get(name, "wal.enabled", Boolean.class))
+		                    .walDir(walDir)
+		                    .walSegmentBytes(get(name, "wal.segment-bytes", Long.class))
+		                    .snapshotEnabled(get(name, "snapshot.enabled", Boolean.class))
+		                    .snapshotPath(snapshotPath)
+		                    .offHeapEnabled(get(name, "off-heap.enabled", Boolean.class))
+		                    .offHeapSlabBytes(get(name, "off-heap.slab-bytes", Integer.class))
+		                    .offHeapMaxBytes(get(name, "off-heap.max-bytes", Long.class))
+		                    .scalerMinCapacity(get(name, "scaler.capacity.min", Integer.class))
+		                    .scalerMaxCapacity(get(name, "scaler.capacity.max", Integer.class))
+		                    .scalerGrowFactor(get(name, "scaler.grow.factor", Double.class))
+		                    .scalerShrinkFactor(get(name, "scaler.shrink.factor", Double.class))
+		                    .scalerWindowMs(get(name, "scaler.window-ms", Long.class))
+		                    .scalerPeriodMs(get(name, "scaler.period-ms", Long.class))
+		                    .scalerPeakThreshold(get(name, "scaler.peak.threshold", Integer.class))
+		                    .scalerTroughThreshold(get(name, "scaler.trough.threshold", Integer.class))
+		                    .scalerCooldownMs(get(name, "scaler.cooldown-ms", Long.class))
+		                    .scalerMinMemoryBytes(get(name, "scaler.memory.min", Long.class))
+		                    .scalerMaxMemoryBytes(get(name, "scaler.memory.max", Long.class))
+		                    .scalerGrowHeadroom(get(name, "scaler.memory.grow-headroom", Double.class))
+		                    .scalerShrinkHeadroom(get(name, "scaler.memory.shrink-headroom", Double.class))
+		                    .build();
+	}
+
+	private List<String> groups(String name) {
+		List<String> groups = new ArrayList<>();
+		for (String group : get(name, "groups", String[].class)) {
+			String trimmed = group.trim();
+			if (trimmed.isEmpty()) {
+				continue;
+			}
+			if (!NAME.matcher(trimmed)
+			         .matches() || groups.contains(trimmed)) {
+				log.warn("Ignoring invalid or duplicate consumer group '{}' for queue '{}'.", trimmed, name);
+				continue;
+			}
+			groups.add(trimmed);
+		}
+		return groups;
+	}
+
+	private boolean hasOverride(String name, String key) {
+		return environment.containsProperty("message-queue.queues." + name + "." + key);
+	}
+
+	private <T> T get(String name, String key, Class<T> type) {
+		T value = environment.getProperty("message-queue.queues." + name + "." + key, type);
+		return value != null ? value : environment.getRequiredProperty("message-queue." + key, type);
+	}
+
+	@Override
+	public void close() {
+		for (NamedQueue queue : queues.values()) {
+			if (queue.getScaler()
+			         .isRunning()) {
+				queue.getScaler()
+				     .close();
+			}
+			try {
+				queue.getQueue()
+				     .close();
+			} catch (Exception e) {
+				log.warn("Queue '{}' close failed: {}", queue.getName(), e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package vn.io.nghlong3004.message_queue.registry;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import vn.io.nghlong3004.message_queue.service.MessageQueueScalerService;
+import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+
+@Getter
+@RequiredArgsConstructor
+public class NamedQueue {
+
+	private final String name;
+	private final MessageQueueService queue;
+	private final MessageQueueScalerService scaler;
+}
@@ -0,0 +1,68 @@
+package vn.io.nghlong3004.message_queue.registry;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Getter;
+import vn.io.nghlong3004.message_queue.queue.AdmissionMode;
+import vn.io.nghlong3004.message_queue.queue.DelayEngine;
+import vn.io.nghlong3004.message_queue.queue.PromotionMode;
+import vn.io.nghlong3004.message_queue.queue.ReadyEngine;
+
+@Getter
+@Builder
+public class QueueSettings {
+
+	private final String name;
+
+	private final long enqueueTimeoutMs;
+	private final long delayMillis;
+	private final int capacity;
+	private final AdmissionMode admission;
+	private final long memoryBudgetBytes;
+	private final double memoryHighWatermark;
+	private final double memoryLowWatermark;
+	private final ReadyEngine readyEngine;
+	private final int ringSize;
+	private final int partitions;
+	private final int starvationInterval;
+	private final PromotionMode promotionMode;
+	private final int promotionBatchSize;
+	private final DelayEngine delayEngine;
+	private final long wheelTickMs;
+	private final int wheelSize;
+	private final int maxInFlight;
+	private final long visibilityTimeoutMs;
+	private final int maxDeliveries;
+	private final long retryBaseDelayMs;
+	private final long retryMaxDelayMs;
+	private final double retryMultiplier;
+	private final double retryJitter;
+	private final int deadLetterCapacity;
+	private final List<String> groups;
+	private final long latencyWindowMs;
+	private final long metricSnapshotMs;
+
+	private final boolean walEnabled;
+	private final String walDir;
+	private final long walSegmentBytes;
+	private final boolean snapshotEnabled;
+	private final String snapshotPath;
+
+	private final boolean offHeapEnabled;
+	private final int offHeapSlabBytes;
+	private final long offHeapMaxBytes;
+
+	private final int scalerMinCapacity;
+	private final int scalerMaxCapacity;
+	private final double scalerGrowFactor;
+	private final double scalerShrinkFactor;
+	private final long scalerWindowMs;
+	private final long scalerPeriodMs;
+	private final int scalerPeakThreshold;
+	private final int scalerTroughThreshold;
+	private final long scalerCooldownMs;
+	private final long scalerMinMemoryBytes;
+	private final long scalerMaxMemoryBytes;
+	private final double scalerGrowHeadroom;
+	private final double scalerShrinkHeadroom;
+}
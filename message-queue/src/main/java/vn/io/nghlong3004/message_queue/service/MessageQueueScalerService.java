@@ -6,4 +6,6 @@ public interface MessageQueueScalerService {
 
 	void close();
 
+	boolean isRunning();
+
 }
@@ -1,19 +1,89 @@
 package vn.io.nghlong3004.message_queue.service;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import vn.io.nghlong3004.message_queue.metrics.StageLatencies;
 import vn.io.nghlong3004.message_queue.model.Message;
 import vn.io.nghlong3004.message_queue.model.Status;
+import vn.io.nghlong3004.message_queue.model.dto.MessageQueueMetric;
+import vn.io.nghlong3004.message_queue.queue.AdmissionMode;
 
 public interface MessageQueueService extends AutoCloseable {
 
 	void enqueue(Message message);
 
-	Message poll(String consumerName, long timeoutMillis);
+	int enqueueAll(List<Message> messages);
 
-	void handleAck(String consumerName, Status status);
+	CompletableFuture<List<Message>> pollAsync(String consumerName, int max, long timeoutMillis);
+
+	/**
+	 * Withdraws a poll returned by {@link #pollAsync} that is still parked, completing it with 410.
+	 * Returns false when it has already completed.
+	 */
+	boolean cancelPoll(String consumerName, CompletableFuture<List<Message>> poll);
+
+	/**
+	 * Runs {@code task} on the queue's timer after {@code delayMillis}.
+	 */
+	ScheduledFuture<?> schedule(Runnable task, long delayMillis);
+
+	/**
+	 * A NACK is redelivered after {@code retryDelayMillis}, or after the queue's configured backoff
+	 * when it is null. The delay is ignored for ACK.
+	 */
+	void handleAck(String consumerName, Status status, Long retryDelayMillis);
+
+	void handleAck(String consumerName, Status status, Collection<Long> ids, Long retryDelayMillis);
+
+	void handleAckUpTo(String consumerName, Status status, long upToId, Long retryDelayMillis);
+
+	int extendLease(String consumerName, Collection<Long> ids, long leaseMillis);
+
+	long getExpiredLeases();
+
+	MessageQueueMetric getMetric();
+
+	StageLatencies getLatencies();
+
+	/**
+	 * The named consumer group of a fan-out queue. Every group receives every message.
+	 */
+	MessageQueueService group(String name);
+
+	List<Message> getDeadLetters(long afterId, int limit);
+
+	int requeueDeadLetters(Collection<Long> ids);
+
+	int purgeDeadLetters(Collection<Long> ids);
+
+	int getDeadLetterCount();
+
+	long getDeadLettered();
+
+	long getDeadLettersRequeued();
+
+	long getDeadLettersPurged();
+
+	long getDeadLettersDropped();
 
 	int getSize();
 
 	int getCapacity();
 
 	void setCapacity(int capacity);
+
+	AdmissionMode getAdmission();
+
+	long getMemoryBudget();
+
+	void setMemoryBudget(long memoryBudget);
+
+	long getPayloadBytes();
+
+	/**
+	 * Describes the limit that currently blocks enqueue, or null while there is room.
+	 */
+	String getAdmissionLimit();
 }
@@ -0,0 +1,374 @@
+package vn.io.nghlong3004.message_queue.service.impl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import vn.io.nghlong3004.message_queue.exception.ResourceException;
+import vn.io.nghlong3004.message_queue.metrics.StageLatencies;
+import vn.io.nghlong3004.message_queue.model.GroupDelivery;
+import vn.io.nghlong3004.message_queue.model.GroupLeaseExpiry;
+import vn.io.nghlong3004.message_queue.model.LeaseExpiry;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.MessageStatus;
+import vn.io.nghlong3004.message_queue.model.Status;
+import vn.io.nghlong3004.message_queue.model.dto.MessageQueueMetric;
+import vn.io.nghlong3004.message_queue.queue.AdmissionMode;
+import vn.io.nghlong3004.message_queue.queue.FanOutLog;
+import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+
+/**
+ * A consumer group reading a fan-out queue. The group has its own cursor into the shared
+ * {@link FanOutLog}, its own redelivery queue and its own in-progress set; producing, capacity and
+ * the dead-letter store belong to the queue.
+ */
+@Slf4j
+public class ConsumerGroup implements MessageQueueService {
+
+	@Getter
+	private final String name;
+	private final MessageQueueImpl queue;
+	private final FanOutLog fanOut;
+
+	private final AtomicLong cursor = new AtomicLong();
+	private final ConcurrentLinkedQueue<GroupDelivery> redeliveries = new ConcurrentLinkedQueue<>();
+
+	private final ConsumerLeases<GroupDelivery> consumers;
+	private final AtomicInteger inProgressCount = new AtomicInteger();
+
+	ConsumerGroup(String name, MessageQueueImpl queue, FanOutLog fanOut, int maxInFlight,
+			long visibilityTimeoutMs) {
+		this.name = name;
+		this.queue = queue;
+		this.fanOut = fanOut;
+		this.consumers = new GroupConsumers(maxInFlight, visibilityTimeoutMs);
+	}
+
+	@Override
+	public void enqueue(Message message) {
+		queue.enqueue(message);
+	}
+
+	@Override
+	public int enqueueAll(List<Message> messages) {
+		return queue.enqueueAll(messages);
+	}
+
+	@Override
+	public CompletableFuture<List<Message>> pollAsync(String consumerName, int max,
+			long timeoutMillis) {
+		return consumers.pollAsync(consumerName, max, timeoutMillis);
+	}
+
+	boolean hasWaiters() {
+		return consumers.hasWaiters();
+	}
+
+	void dispatchWaiters() {
+		consumers.dispatchWaiters();
+	}
+
+	@Override
+	public void handleAck(String consumerName, Status status, Long retryDelayMillis) {
+		settle(consumerName, status, consumers.releaseAll(consumerName), retryDelayMillis);
+	}
+
+	@Override
+	public void handleAck(String consumerName, Status status, Collection<Long> ids,
+			Long retryDelayMillis) {
+		settle(consumerName, status, consumers.release(consumerName, ids), retryDelayMillis);
+	}
+
+	@Override
+	public void handleAckUpTo(String consumerName, Status status, long upToId,
+			Long retryDelayMillis) {
+		settle(consumerName, status, consumers.releaseUpTo(consumerName, upToId), retryDelayMillis);
+	}
+
+	private void settle(String consumerName, Status status, List<GroupDelivery> deliveries,
+			Long retryDelayMillis) {
+		if (deliveries.isEmpty()) {
+			log.warn("{} -> group={} consumer={} has no matching in-progress message.", status, name,
+					consumerName);
+			throw new ResourceException(HttpStatus.BAD_REQUEST,
+					"no in-progress message. Nothing to " + (status == Status.ACK ? "ack" : "nack"));
+		}
+		inProgressCount.addAndGet(-deliveries.size());
+		for (GroupDelivery delivery : deliveries) {
+			consumers.cancelLease(delivery);
+		}
+		switch (status) {
+			case ACK -> {
+				for (GroupDelivery delivery : deliveries) {
+					delivery.setLeaseOwner(null);
+					settled(delivery);
+					queue.getLatencies()
+					     .recordEndToEnd(delivery.getMessage()
+					                             .getCreated());
+					queue.release(delivery, false);
+				}
+				queue.getMetrics()
+				     .acked(deliveries.size());
+				log.info("ack -> group={} consumer={} acked={}. inProgressSize={}", name, consumerName,
+						deliveries.size(), inProgressCount.get());
+			}
+			case NACK -> {
+				for (GroupDelivery delivery : deliveries) {
+					delivery.setLeaseOwner(null);
+					settled(delivery);
+					retry(delivery, retryDelayMillis);
+				}
+				queue.getMetrics()
+				     .nacked(deliveries.size());
+				log.info("nack -> group={} consumer={} nacked={}. inProgressSize={}", name, consumerName,
+						deliveries.size(), inProgressCount.get());
+			}
+			default -> log.warn("Unknown status {} by group={} consumer={}", status, name, consumerName);
+		}
+	}
+
+	private void settled(GroupDelivery delivery) {
+		queue.getLatencies()
+		     .record(MessageStatus.IN_PROGRESS, System.nanoTime() - delivery.getLeasedAtNanos());
+	}
+
+	private void retry(GroupDelivery delivery, Long retryDelayMillis) {
+		if (queue.exhausted(delivery.getDeliveries())) {
+			Message message = delivery.getMessage();
+			log.warn("retry -> group={} gave up on id={} after {} deliveries", name, message.getId(),
+					delivery.getDeliveries());
+			queue.release(delivery, true);
+			return;
+		}
+		long delay = retryDelayMillis != null ? retryDelayMillis : queue.backoff(delivery.getDeliveries());
+		if (delay > 0) {
+			queue.schedule(() -> redeliver(delivery), delay);
+		} else {
+			redeliver(delivery);
+		}
+	}
+
+	private void redeliver(GroupDelivery delivery) {
+		redeliveries.offer(delivery);
+		consumers.dispatchWaiters();
+	}
+
+	@Override
+	public int extendLease(String consumerName, Collection<Long> ids, long leaseMillis) {
+		return consumers.extendLease(consumerName, ids, leaseMillis);
+	}
+
+	void expire(GroupLeaseExpiry expiry) {
+		GroupDelivery delivery = consumers.expire(expiry);
+		if (delivery == null) {
+			return;
+		}
+		inProgressCount.decrementAndGet();
+		log.info("expire -> group={} consumer={} id={} lease expired.", name, expiry.getConsumerName(),
+				expiry.getMessageId());
+		retry(delivery, 0L);
+	}
+
+	@Override
+	public long getExpiredLeases() {
+		return consumers.getExpiredLeases();
+	}
+
+	@Override
+	public StageLatencies getLatencies() {
+		return queue.getLatencies();
+	}
+
+	/**
+	 * Messages the group has not read yet; redeliveries are not included.
+	 */
+	public long getLag() {
+		return fanOut.tail() - cursor.get();
+	}
+
+	@Override
+	public MessageQueueMetric getMetric() {
+		MessageQueueMetric shared = queue.getMetric();
+		return new MessageQueueMetric(shared.capacity(), shared.size(), consumers.getExpiredLeases(),
+				shared.notReady(), shared.ready(), inProgressCount.get(), shared.deadLetters(),
+				shared.payloadBytes(), shared.memoryBudget());
+	}
+
+	@Override
+	public boolean cancelPoll(String consumerName, CompletableFuture<List<Message>> poll) {
+		return consumers.cancelPoll(consumerName, poll);
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+		return queue.schedule(task, delayMillis);
+	}
+
+
+	@Override
+	public MessageQueueService group(String name) {
+		throw new ResourceException(HttpStatus.BAD_REQUEST,
+				"Consumer group " + this.name + " has no groups of its own");
+	}
+
+	@Override
+	public List<Message> getDeadLetters(long afterId, int limit) {
+		return queue.getDeadLetters(afterId, limit);
+	}
+
+	@Override
+	public int requeueDeadLetters(Collection<Long> ids) {
+		return queue.requeueDeadLetters(ids);
+	}
+
+	@Override
+	public int purgeDeadLetters(Collection<Long> ids) {
+		return queue.purgeDeadLetters(ids);
+	}
+
+	@Override
+	public int getDeadLetterCount() {
+		return queue.getDeadLetterCount();
+	}
+
+	@Override
+	public long getDeadLettered() {
+		return queue.getDeadLettered();
+	}
+
+	@Override
+	public long getDeadLettersRequeued() {
+		return queue.getDeadLettersRequeued();
+	}
+
+	@Override
+	public long getDeadLettersPurged() {
+		return queue.getDeadLettersPurged();
+	}
+
+	@Override
+	public long getDeadLettersDropped() {
+		return queue.getDeadLettersDropped();
+	}
+
+	@Override
+	public int getSize() {
+		return queue.getSize();
+	}
+
+	@Override
+	public int getCapacity() {
+		return queue.getCapacity();
+	}
+
+	@Override
+	public void setCapacity(int capacity) {
+		queue.setCapacity(capacity);
+	}
+
+	@Override
+	public AdmissionMode getAdmission() {
+		return queue.getAdmission();
+	}
+
+	@Override
+	public long getMemoryBudget() {
+		return queue.getMemoryBudget();
+	}
+
+	@Override
+	public void setMemoryBudget(long memoryBudget) {
+		queue.setMemoryBudget(memoryBudget);
+	}
+
+	@Override
+	public long getPayloadBytes() {
+		return queue.getPayloadBytes();
+	}
+
+	@Override
+	public String getAdmissionLimit() {
+		return queue.getAdmissionLimit();
+	}
+
+	@Override
+	public void close() {
+		// the queue owns every resource
+	}
+
+	/**
+	 * Hands out redeliveries first, then the next unread entries of the fan-out log.
+	 */
+	private final class GroupConsumers extends ConsumerLeases<GroupDelivery> {
+
+		GroupConsumers(int maxInFlight, long visibilityTimeoutMs) {
+			super("group=" + name, queue, maxInFlight, visibilityTimeoutMs);
+		}
+
+		@Override
+		boolean hasReady() {
+			return !redeliveries.isEmpty() || fanOut.hasNext(cursor.get());
+		}
+
+		@Override
+		int drainTo(List<GroupDelivery> sink, int max, String consumerName) {
+			int drained = 0;
+			GroupDelivery delivery;
+			while (drained < max && (delivery = redeliveries.poll()) != null) {
+				sink.add(delivery);
+				++drained;
+			}
+			FanOutLog.Entry entry;
+			while (drained < max && (entry = fanOut.claim(cursor)) != null) {
+				sink.add(new GroupDelivery(entry.getPosition(), entry.getMessage()));
+				++drained;
+			}
+			return drained;
+		}
+
+		@Override
+		void putBack(List<GroupDelivery> deliveries) {
+			redeliveries.addAll(deliveries);
+		}
+
+		@Override
+		Message deliver(GroupDelivery delivery) {
+			long now = System.nanoTime();
+			long readySince = delivery.getMessage()
+			                          .getStageStartedNanos();
+			if (delivery.getDeliveries() == 0 && readySince != 0L) {
+				queue.getLatencies()
+				     .record(MessageStatus.READY, now - readySince);
+			}
+			delivery.setLeasedAtNanos(now);
+			delivery.setDeliveries(delivery.getDeliveries() + 1);
+			return delivery.getMessage();
+		}
+
+		@Override
+		void delivered(String consumerName, List<Message> messages) {
+			inProgressCount.addAndGet(messages.size());
+			queue.getMetrics()
+			     .polled(messages.size());
+			log.debug("poll -> group={} consumer={} got {} message(s), lag={}, inProgressSize={}", name,
+					consumerName, messages.size(), getLag(), inProgressCount.get());
+		}
+
+		@Override
+		long id(GroupDelivery delivery) {
+			return delivery.getMessage()
+			               .getId();
+		}
+
+		@Override
+		LeaseExpiry expiry(long id, String consumerName, long expiresAtNanos) {
+			return new GroupLeaseExpiry(name, id, consumerName, expiresAtNanos);
+		}
+	}
+}
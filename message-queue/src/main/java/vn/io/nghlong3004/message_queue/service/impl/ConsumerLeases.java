@@ -0,0 +1,354 @@
+package vn.io.nghlong3004.message_queue.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import vn.io.nghlong3004.message_queue.exception.ResourceException;
+import vn.io.nghlong3004.message_queue.model.Leasable;
+import vn.io.nghlong3004.message_queue.model.LeaseExpiry;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.PollWaiter;
+
+/**
+ * Parked polls and per-consumer leases, shared by a queue read directly and by each consumer group
+ * of a fan-out queue. A subclass says where ready items come from and what handing one out
+ * records; the waiters, the one-poll-per-consumer rule, the in-flight limit and the lease timers
+ * live here.
+ *
+ * @param <T> what a consumer holds: the message itself, or a group's delivery of it
+ */
+@Slf4j
+abstract class ConsumerLeases<T extends Leasable> {
+
+	private final String owner;
+	private final MessageQueueImpl queue;
+	private final int maxInFlight;
+	private final long visibilityTimeoutMs;
+
+	private final ConcurrentMap<String, ConcurrentNavigableMap<Long, T>> inProgress =
+			new ConcurrentHashMap<>();
+	private final AtomicLong expiredLeases = new AtomicLong();
+
+	private final ConcurrentLinkedDeque<PollWaiter> waiters = new ConcurrentLinkedDeque<>();
+	private final ConcurrentMap<String, PollWaiter> polls = new ConcurrentHashMap<>();
+
+	ConsumerLeases(String owner, MessageQueueImpl queue, int maxInFlight, long visibilityTimeoutMs) {
+		this.owner = owner;
+		this.queue = queue;
+		this.maxInFlight = maxInFlight;
+		this.visibilityTimeoutMs = visibilityTimeoutMs;
+	}
+
+	abstract boolean hasReady();
+
+	abstract int drainTo(List<T> sink, int max, String consumerName);
+
+	/**
+	 * Takes back items drained for a waiter that timed out or was cancelled in the meantime.
+	 */
+	abstract void putBack(List<T> items);
+
+	/**
+	 * Records one more delivery of {@code item}, just before it is leased.
+	 */
+	abstract Message deliver(T item);
+
+	abstract void delivered(String consumerName, List<Message> messages);
+
+	abstract long id(T item);
+
+	abstract LeaseExpiry expiry(long id, String consumerName, long expiresAtNanos);
+
+	CompletableFuture<List<Message>> pollAsync(String consumerName, int max, long timeoutMillis) {
+		PollWaiter waiter = new PollWaiter(consumerName, max);
+		if (polls.putIfAbsent(consumerName, waiter) != null) {
+			throw new ResourceException(HttpStatus.CONFLICT,
+					"Consumer " + consumerName + " already has a poll in flight");
+		}
+		boolean parked = false;
+		try {
+			ConcurrentNavigableMap<Long, T> leased = leasedBy(consumerName);
+			int room = Math.min(max, maxInFlight - leased.size());
+			if (room <= 0) {
+				throw inFlightLimitReached(consumerName);
+			}
+
+			queue.promoteDue();
+			List<T> items = new ArrayList<>(room);
+			if (drainTo(items, room, consumerName) > 0) {
+				return CompletableFuture.completedFuture(assign(consumerName, leased, items));
+			}
+			if (timeoutMillis <= 0) {
+				log.trace("poll -> {} consumer={} no message available.", owner, consumerName);
+				queue.getMetrics()
+				     .rejectedEmpty();
+				throw new ResourceException(HttpStatus.BAD_REQUEST, "MessageQueue is empty");
+			}
+
+			parked = true;
+			waiter.setTimeout(queue.schedule(() -> expireWaiter(waiter), timeoutMillis));
+			waiters.offerLast(waiter);
+			dispatchWaiters();
+			queue.scheduleLazyWakeup();
+			return waiter.getFuture();
+		} finally {
+			if (!parked) {
+				polls.remove(consumerName, waiter);
+			}
+		}
+	}
+
+	boolean hasWaiters() {
+		return !waiters.isEmpty();
+	}
+
+	void dispatchWaiters() {
+		PollWaiter waiter;
+		while (hasReady() && (waiter = waiters.pollFirst()) != null) {
+			if (waiter.isClaimed()) {
+				continue;
+			}
+			ConcurrentNavigableMap<Long, T> leased = leasedBy(waiter.getConsumerName());
+			int room = Math.min(waiter.getMax(), maxInFlight - leased.size());
+			List<T> items = new ArrayList<>(Math.max(room, 0));
+			if (room > 0 && drainTo(items, room, waiter.getConsumerName()) == 0) {
+				// A publisher that found the deque empty while this waiter was out of it did not
+				// dispatch, so the loop condition re-checks for ready items before leaving.
+				waiters.offerFirst(waiter);
+				continue;
+			}
+			if (!claim(waiter)) {
+				putBack(items);
+				continue;
+			}
+			waiter.getTimeout()
+			      .cancel(false);
+			if (items.isEmpty()) {
+				waiter.getFuture()
+				      .completeExceptionally(inFlightLimitReached(waiter.getConsumerName()));
+				continue;
+			}
+			waiter.getFuture()
+			      .complete(assign(waiter.getConsumerName(), leased, items));
+		}
+	}
+
+	/**
+	 * Gives {@code item} straight to the first parked waiter when nothing is queued ahead of it.
+	 */
+	boolean handOff(T item) {
+		if (waiters.isEmpty() || hasReady()) {
+			return false;
+		}
+		PollWaiter waiter;
+		while ((waiter = waiters.pollFirst()) != null) {
+			if (!claim(waiter)) {
+				continue;
+			}
+			waiter.getTimeout()
+			      .cancel(false);
+			ConcurrentNavigableMap<Long, T> leased = leasedBy(waiter.getConsumerName());
+			if (leased.size() >= maxInFlight) {
+				waiter.getFuture()
+				      .completeExceptionally(inFlightLimitReached(waiter.getConsumerName()));
+				continue;
+			}
+			List<T> items = new ArrayList<>(1);
+			items.add(item);
+			waiter.getFuture()
+			      .complete(assign(waiter.getConsumerName(), leased, items));
+			log.debug("handOff -> id={} went straight to consumer={}", id(item),
+					waiter.getConsumerName());
+			return true;
+		}
+		return false;
+	}
+
+	private List<Message> assign(String consumerName, ConcurrentNavigableMap<Long, T> leased,
+			List<T> items) {
+		List<Message> messages = new ArrayList<>(items.size());
+		for (T item : items) {
+			messages.add(deliver(item));
+			leased.put(id(item), item);
+			lease(item, consumerName, visibilityTimeoutMs);
+		}
+		delivered(consumerName, messages);
+		return messages;
+	}
+
+	private ResourceException inFlightLimitReached(String consumerName) {
+		return new ResourceException(HttpStatus.BAD_REQUEST,
+				"Consumer " + consumerName + " already holds " + maxInFlight + " in-progress messages");
+	}
+
+	/**
+	 * Claims a parked waiter and releases its consumer's poll registration before the future
+	 * completes, so a consumer re-polling from the completion callback is not rejected.
+	 */
+	private boolean claim(PollWaiter waiter) {
+		if (!waiter.claim()) {
+			return false;
+		}
+		polls.remove(waiter.getConsumerName(), waiter);
+		return true;
+	}
+
+	private void expireWaiter(PollWaiter waiter) {
+		if (!claim(waiter)) {
+			return;
+		}
+		waiters.remove(waiter);
+		log.trace("poll -> {} consumer={} timed out.", owner, waiter.getConsumerName());
+		queue.getMetrics()
+		     .rejectedEmpty();
+		waiter.getFuture()
+		      .completeExceptionally(
+				      new ResourceException(HttpStatus.BAD_REQUEST, "MessageQueue is empty"));
+	}
+
+	boolean cancelPoll(String consumerName, CompletableFuture<List<Message>> poll) {
+		PollWaiter waiter = polls.get(consumerName);
+		if (waiter == null || waiter.getFuture() != poll || !claim(waiter)) {
+			return false;
+		}
+		waiters.remove(waiter);
+		waiter.getTimeout()
+		      .cancel(false);
+		waiter.getFuture()
+		      .completeExceptionally(new ResourceException(HttpStatus.GONE, "Poll cancelled"));
+		return true;
+	}
+
+	ConcurrentNavigableMap<Long, T> leasedBy(String consumerName) {
+		return inProgress.computeIfAbsent(consumerName, k -> new ConcurrentSkipListMap<>());
+	}
+
+	Set<Map.Entry<String, ConcurrentNavigableMap<Long, T>>> inProgress() {
+		return inProgress.entrySet();
+	}
+
+	List<T> releaseAll(String consumerName) {
+		ConcurrentNavigableMap<Long, T> leased = inProgress.get(consumerName);
+		if (leased == null) {
+			return List.of();
+		}
+		List<T> released = new ArrayList<>();
+		Map.Entry<Long, T> entry;
+		while ((entry = leased.pollFirstEntry()) != null) {
+			released.add(entry.getValue());
+		}
+		return released;
+	}
+
+	List<T> release(String consumerName, Collection<Long> ids) {
+		ConcurrentNavigableMap<Long, T> leased = inProgress.get(consumerName);
+		if (leased == null) {
+			return List.of();
+		}
+		List<T> released = new ArrayList<>(ids.size());
+		for (Long id : ids) {
+			T item = leased.remove(id);
+			if (item != null) {
+				released.add(item);
+			} else {
+				log.debug("release -> {} consumer={} does not hold id={}", owner, consumerName, id);
+			}
+		}
+		return released;
+	}
+
+	List<T> releaseUpTo(String consumerName, long upToId) {
+		ConcurrentNavigableMap<Long, T> leased = inProgress.get(consumerName);
+		if (leased == null) {
+			return List.of();
+		}
+		List<T> released = new ArrayList<>();
+		for (Long id : leased.headMap(upToId, true)
+		                     .keySet()) {
+			T item = leased.remove(id);
+			if (item != null) {
+				released.add(item);
+			}
+		}
+		return released;
+	}
+
+	int extendLease(String consumerName, Collection<Long> ids, long leaseMillis) {
+		ConcurrentNavigableMap<Long, T> leased = inProgress.get(consumerName);
+		Collection<T> targets = new ArrayList<>();
+		if (leased != null) {
+			if (ids == null) {
+				targets.addAll(leased.values());
+			} else {
+				for (Long id : ids) {
+					T item = leased.get(id);
+					if (item != null) {
+						targets.add(item);
+					}
+				}
+			}
+		}
+		if (targets.isEmpty()) {
+			log.warn("extend -> {} consumer={} has no matching in-progress message.", owner,
+					consumerName);
+			throw new ResourceException(HttpStatus.BAD_REQUEST,
+					"no in-progress message. Nothing to extend");
+		}
+
+		long millis = leaseMillis > 0 ? leaseMillis : visibilityTimeoutMs;
+		for (T item : targets) {
+			lease(item, consumerName, millis);
+		}
+		log.debug("extend -> {} consumer={} extended={} by {} ms", owner, consumerName,
+				targets.size(), millis);
+		return targets.size();
+	}
+
+	void lease(T item, String consumerName, long leaseMillis) {
+		cancelLease(item);
+		long expiresAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseMillis);
+		item.setLeaseOwner(consumerName);
+		item.setLeaseExpiresAtNanos(expiresAtNanos);
+		queue.watch(expiry(id(item), consumerName, expiresAtNanos));
+	}
+
+	void cancelLease(T item) {
+		String leaseOwner = item.getLeaseOwner();
+		if (leaseOwner != null) {
+			queue.unwatch(expiry(id(item), leaseOwner, item.getLeaseExpiresAtNanos()));
+		}
+	}
+
+	/**
+	 * Takes back the item behind a lease that ran out, or returns null when the lease was settled
+	 * or extended first.
+	 */
+	T expire(LeaseExpiry expiry) {
+		ConcurrentNavigableMap<Long, T> leased = inProgress.get(expiry.getConsumerName());
+		T item = leased == null ? null : leased.get(expiry.getMessageId());
+		if (item == null ||
+		    !expiry.matches(item.getLeaseOwner(), item.getLeaseExpiresAtNanos()) ||
+		    !leased.remove(expiry.getMessageId(), item)) {
+			return null;
+		}
+		expiredLeases.incrementAndGet();
+		item.setLeaseOwner(null);
+		return item;
+	}
+
+	long getExpiredLeases() {
+		return expiredLeases.get();
+	}
+}
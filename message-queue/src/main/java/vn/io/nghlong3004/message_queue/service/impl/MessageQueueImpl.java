@@ -1,190 +1,1125 @@
 package vn.io.nghlong3004.message_queue.service.impl;
 
-import jakarta.annotation.PostConstruct;
-import java.util.Comparator;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.DelayQueue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.stereotype.Service;
 import vn.io.nghlong3004.message_queue.exception.ResourceException;
+import vn.io.nghlong3004.message_queue.metrics.QueueMetrics;
+import vn.io.nghlong3004.message_queue.metrics.StageLatencies;
 import vn.io.nghlong3004.message_queue.model.DelayedMessage;
+import vn.io.nghlong3004.message_queue.model.GroupDelivery;
+import vn.io.nghlong3004.message_queue.model.GroupLeaseExpiry;
+import vn.io.nghlong3004.message_queue.model.LeaseExpiry;
 import vn.io.nghlong3004.message_queue.model.Message;
 import vn.io.nghlong3004.message_queue.model.MessageStatus;
 import vn.io.nghlong3004.message_queue.model.Status;
+import vn.io.nghlong3004.message_queue.model.dto.MessageQueueMetric;
+import vn.io.nghlong3004.message_queue.queue.AdmissionLimit;
+import vn.io.nghlong3004.message_queue.queue.AdmissionMode;
+import vn.io.nghlong3004.message_queue.queue.DelayEngine;
+import vn.io.nghlong3004.message_queue.queue.DelayQueueStore;
+import vn.io.nghlong3004.message_queue.queue.DelayStore;
+import vn.io.nghlong3004.message_queue.queue.FanOutLog;
+import vn.io.nghlong3004.message_queue.queue.HashedTimingWheel;
+import vn.io.nghlong3004.message_queue.queue.LeaseTimer;
+import vn.io.nghlong3004.message_queue.queue.MultiLevelReadyQueue;
+import vn.io.nghlong3004.message_queue.queue.PartitionedReadyQueue;
+import vn.io.nghlong3004.message_queue.queue.PayloadArena;
+import vn.io.nghlong3004.message_queue.queue.PriorityReadyQueue;
+import vn.io.nghlong3004.message_queue.queue.PromotionMode;
+import vn.io.nghlong3004.message_queue.queue.ReadyEngine;
+import vn.io.nghlong3004.message_queue.queue.ReadyQueue;
+import vn.io.nghlong3004.message_queue.queue.RingBufferReadyQueue;
+import vn.io.nghlong3004.message_queue.queue.StateCounters;
+import vn.io.nghlong3004.message_queue.registry.MessageQueueRegistry;
+import vn.io.nghlong3004.message_queue.registry.QueueSettings;
 import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+import vn.io.nghlong3004.message_queue.snapshot.QueueSnapshot;
+import vn.io.nghlong3004.message_queue.snapshot.SnapshotEntry;
+import vn.io.nghlong3004.message_queue.wal.WriteAheadLog;
 
 @Slf4j
-@Service
 public class MessageQueueImpl implements MessageQueueService {
 
-	private final DelayQueue<DelayedMessage> delayQueue = new DelayQueue<>();
+	private static final long LEASE_TICK_MS = 10;
+	private static final int LEASE_WHEEL_SIZE = 1024;
 
-	private final PriorityBlockingQueue<Message> readyQueue = new PriorityBlockingQueue<>(1 << 10,
-			Comparator.comparing(Message::getCreated));
+	private DelayStore delayStore;
 
-	private final ConcurrentMap<String, Message> inProgress = new ConcurrentHashMap<>();
+	private ReadyQueue readyQueue;
+
+	private ConsumerLeases<Message> consumers;
+	private final StateCounters counters = new StateCounters();
+	private volatile MessageQueueMetric metricSnapshot;
+
+	private final Map<String, ConsumerGroup> groups = new LinkedHashMap<>();
+	private FanOutLog fanOut;
+
+	private final LeaseTimer leases = new LeaseTimer(LEASE_TICK_MS, LEASE_WHEEL_SIZE);
+
+	private final ConcurrentNavigableMap<Long, Message> deadLetters = new ConcurrentSkipListMap<>();
+	private final AtomicInteger deadLetterCount = new AtomicInteger();
+	private final AtomicLong deadLettered = new AtomicLong();
+	private final AtomicLong deadLettersRequeued = new AtomicLong();
+	private final AtomicLong deadLettersPurged = new AtomicLong();
+	private final AtomicLong deadLettersDropped = new AtomicLong();
+
+	private StageLatencies latencies;
+	private final QueueMetrics metrics;
+
+	private final AtomicLong sequence = new AtomicLong();
 
 	private final AtomicBoolean running = new AtomicBoolean(false);
 
 	private final ReentrantLock lock = new ReentrantLock();
 	private final Condition notFull = lock.newCondition();
-	private final Condition notEmpty = lock.newCondition();
+	private final AtomicInteger notFullWaiters = new AtomicInteger();
 
-	private Thread promoterThread;
-
-	@Value("${message-queue.promoter-wait-step-ms}")
-	private long promoterWaitStepMs;
+	private final AtomicBoolean lazyWakeupScheduled = new AtomicBoolean(false);
 
-	@Value("${message-queue.enqueue-timeout-ms}")
-	private long enqueueTimeoutMs;
+	private Thread promoterThread;
+	private Thread leaseReaperThread;
+	private ScheduledExecutorService timer;
+	private WriteAheadLog wal;
 
-	@Value("${message-queue.delay-ms}")
+	private final String name;
+	private final long enqueueTimeoutMs;
 	private long delayMillis;
-
-	@Value("${message-queue.capacity}")
 	private int capacity;
+	private final AdmissionMode admission;
+	private volatile long memoryBudget;
+	private double memoryHighWatermark;
+	private double memoryLowWatermark;
+	private volatile boolean overBudget;
+	private final ReadyEngine readyEngine;
+	private final int ringSize;
+	private int partitions;
+	private final int starvationInterval;
+	private final PromotionMode promotionMode;
+	private int promotionBatchSize;
+	private final DelayEngine delayEngine;
+	private final long wheelTickMs;
+	private final int wheelSize;
+	private int maxInFlight;
+	private long visibilityTimeoutMs;
+	private final int maxDeliveries;
+	private final long retryBaseDelayMs;
+	private final long retryMaxDelayMs;
+	private final double retryMultiplier;
+	private double retryJitter;
+	private int deadLetterCapacity;
+	private final List<String> groupNames;
+	private long latencyWindowMs;
+	private long metricSnapshotMs;
+	private final boolean walEnabled;
+	private final String walDir;
+	private final long walSegmentBytes;
+	private final boolean snapshotEnabled;
+	private final String snapshotPath;
+	private final boolean offHeapEnabled;
+	private int offHeapSlabBytes;
+	private final long offHeapMaxBytes;
+	private PayloadArena arena;
+
+	public MessageQueueImpl(QueueSettings settings, QueueMetrics metrics) {
+		this.metrics = metrics;
+		this.name = settings.getName();
+		this.enqueueTimeoutMs = settings.getEnqueueTimeoutMs();
+		this.delayMillis = settings.getDelayMillis();
+		this.capacity = settings.getCapacity();
+		this.admission = settings.getAdmission();
+		this.memoryBudget = settings.getMemoryBudgetBytes();
+		this.memoryHighWatermark = settings.getMemoryHighWatermark();
+		this.memoryLowWatermark = settings.getMemoryLowWatermark();
+		this.readyEngine = settings.getReadyEngine();
+		this.ringSize = settings.getRingSize();
+		this.partitions = settings.getPartitions();
+		this.starvationInterval = settings.getStarvationInterval();
+		this.promotionMode = settings.getPromotionMode();
+		this.promotionBatchSize = settings.getPromotionBatchSize();
+		this.delayEngine = settings.getDelayEngine();
+		this.wheelTickMs = settings.getWheelTickMs();
+		this.wheelSize = settings.getWheelSize();
+		this.maxInFlight = settings.getMaxInFlight();
+		this.visibilityTimeoutMs = settings.getVisibilityTimeoutMs();
+		this.maxDeliveries = settings.getMaxDeliveries();
+		this.retryBaseDelayMs = settings.getRetryBaseDelayMs();
+		this.retryMaxDelayMs = settings.getRetryMaxDelayMs();
+		this.retryMultiplier = settings.getRetryMultiplier();
+		this.retryJitter = settings.getRetryJitter();
+		this.deadLetterCapacity = settings.getDeadLetterCapacity();
+		this.groupNames = settings.getGroups();
+		this.latencyWindowMs = settings.getLatencyWindowMs();
+		this.metricSnapshotMs = settings.getMetricSnapshotMs();
+		this.walEnabled = settings.isWalEnabled();
+		this.walDir = settings.getWalDir();
+		this.walSegmentBytes = settings.getWalSegmentBytes();
+		this.snapshotEnabled = settings.isSnapshotEnabled();
+		this.snapshotPath = settings.getSnapshotPath();
+		this.offHeapEnabled = settings.isOffHeapEnabled();
+		this.offHeapSlabBytes = settings.getOffHeapSlabBytes();
+		this.offHeapMaxBytes = settings.getOffHeapMaxBytes();
+	}
 
-	@PostConstruct
-	void init() {
+	public void init() {
 		if (delayMillis < 0) {
 			log.warn("Configured delayMillis < 0 ({}). Forcing to 0.", delayMillis);
 			delayMillis = 0;
 		}
+		if (maxInFlight < 1) {
+			log.warn("Configured maxInFlight < 1 ({}). Forcing to 1.", maxInFlight);
+			maxInFlight = 1;
+		}
+		if (promotionBatchSize < 1) {
+			log.warn("Configured promotionBatchSize < 1 ({}). Forcing to 1.", promotionBatchSize);
+			promotionBatchSize = 1;
+		}
+		if (visibilityTimeoutMs < 1) {
+			log.warn("Configured visibilityTimeoutMs < 1 ({}). Forcing to 1.", visibilityTimeoutMs);
+			visibilityTimeoutMs = 1;
+		}
+		if (retryJitter < 0 || retryJitter > 1) {
+			log.warn("Configured retryJitter outside [0, 1] ({}). Clamping.", retryJitter);
+			retryJitter = Math.max(0, Math.min(1, retryJitter));
+		}
+		if (deadLetterCapacity < 1) {
+			log.warn("Configured deadLetterCapacity < 1 ({}). Forcing to 1.", deadLetterCapacity);
+			deadLetterCapacity = 1;
+		}
+		if (partitions < 1) {
+			log.warn("Configured partitions < 1 ({}). Forcing to 1.", partitions);
+			partitions = 1;
+		}
+		if (latencyWindowMs < 1) {
+			log.warn("Configured latencyWindowMs < 1 ({}). Forcing to 1000.", latencyWindowMs);
+			latencyWindowMs = 1000;
+		}
+		if (memoryBudget < 1) {
+			log.warn("Configured memoryBudget < 1 ({}). Forcing to 1.", memoryBudget);
+			memoryBudget = 1;
+		}
+		if (memoryHighWatermark <= 0 || memoryHighWatermark > 1) {
+			log.warn("Configured memoryHighWatermark outside (0, 1] ({}). Forcing to 1.",
+					memoryHighWatermark);
+			memoryHighWatermark = 1;
+		}
+		if (memoryLowWatermark <= 0 || memoryLowWatermark > memoryHighWatermark) {
+			log.warn("Configured memoryLowWatermark outside (0, {}] ({}). Forcing to {}.",
+					memoryHighWatermark, memoryLowWatermark, memoryHighWatermark);
+			memoryLowWatermark = memoryHighWatermark;
+		}
+		if (metricSnapshotMs < 1) {
+			log.warn("Configured metricSnapshotMs < 1 ({}). Forcing to 1.", metricSnapshotMs);
+			metricSnapshotMs = 1;
+		}
+		latencies = new StageLatencies(latencyWindowMs);
+		metrics.bind(this);
+		if (offHeapEnabled) {
+			if (offHeapSlabBytes < 64) {
+				log.warn("Configured offHeapSlabBytes < 64 ({}). Forcing to 64.", offHeapSlabBytes);
+				offHeapSlabBytes = 64;
+			}
+			arena = new PayloadArena(offHeapSlabBytes, offHeapMaxBytes);
+			metrics.bind(arena);
+		}
+
+		delayStore = switch (delayEngine) {
+			case DELAY_QUEUE -> new DelayQueueStore();
+			case TIMING_WHEEL -> new HashedTimingWheel(wheelTickMs, wheelSize);
+		};
+		readyQueue = partitions > 1 ? new PartitionedReadyQueue(partitions, this::newReadyQueue)
+				: newReadyQueue();
+		if (readyQueue instanceof RingBufferReadyQueue ring && ring.capacity() < capacity) {
+			log.warn("Ring size {} is below capacity {}. Promotion will stall while the ring is full.",
+					ring.capacity(), capacity);
+		}
+		consumers = new DirectConsumers();
+		if (!groupNames.isEmpty()) {
+			fanOut = new FanOutLog(groupNames.size());
+			for (String group : groupNames) {
+				groups.put(group, new ConsumerGroup(group, this, fanOut, maxInFlight, visibilityTimeoutMs));
+			}
+		}
+
+		List<Message> restored = snapshotEnabled ? restoreSnapshot() : null;
+		if (walEnabled) {
+			recover(restored);
+		}
+		if (restored != null) {
+			deleteSnapshot();
+		}
+
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+			Thread t = new Thread(r, threadName("message-queue-timer"));
+			t.setDaemon(true);
+			return t;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		timer = executor;
+		timer.scheduleAtFixedRate(latencies::rotate, latencyWindowMs, latencyWindowMs,
+				TimeUnit.MILLISECONDS);
+		refreshMetric();
+		timer.scheduleAtFixedRate(this::refreshMetric, metricSnapshotMs, metricSnapshotMs,
+				TimeUnit.MILLISECONDS);
 
 		running.set(true);
-		promoterThread = new Thread(this::promoteLoop, "message-queue-promoter");
-		promoterThread.setDaemon(true);
-		promoterThread.start();
-		log.info("MessageQueue initialized. delayMillis={}ms", delayMillis);
+		if (promotionMode == PromotionMode.THREAD) {
+			promoterThread = new Thread(this::promoteLoop, threadName("message-queue-promoter"));
+			promoterThread.setDaemon(true);
+			promoterThread.start();
+		}
+		leaseReaperThread = new Thread(this::reapLoop, threadName("message-queue-lease-reaper"));
+		leaseReaperThread.setDaemon(true);
+		leaseReaperThread.start();
+		log.info("MessageQueue '{}' initialized. ready={}, partitions={}, delay={}, promotion={}, "
+		         + "delayMillis={}ms, visibilityTimeoutMs={}ms, groups={}", name, readyEngine, partitions,
+				delayEngine, promotionMode, delayMillis, visibilityTimeoutMs, groups.keySet());
+	}
+
+	private ReadyQueue newReadyQueue() {
+		return switch (readyEngine) {
+			case PRIORITY -> new PriorityReadyQueue();
+			case RING -> new RingBufferReadyQueue(ringSize);
+			case LEVELS -> new MultiLevelReadyQueue(starvationInterval);
+		};
+	}
+
+	private String threadName(String base) {
+		return MessageQueueRegistry.DEFAULT_QUEUE.equals(name) ? base : base + "-" + name;
+	}
+
+	private void recover(List<Message> restored) {
+		wal = new WriteAheadLog(Path.of(walDir), walSegmentBytes);
+		if (restored != null) {
+			// The snapshot is newer than anything in the log; re-log its messages as the new base.
+			try {
+				wal.discard();
+			} catch (IOException e) {
+				throw new UncheckedIOException("WAL discard failed in " + walDir, e);
+			}
+			wal.start();
+			CompletableFuture<Void> durable = CompletableFuture.completedFuture(null);
+			for (Message message : restored) {
+				durable = wal.appendEnqueue(message);
+				if (message.getStatus() == MessageStatus.DEAD_LETTER) {
+					wal.appendDeadLetter(message.getId());
+				}
+			}
+			awaitDurable(durable);
+			return;
+		}
+
+		List<Message> recovered;
+		try {
+			recovered = wal.replay();
+		} catch (IOException e) {
+			throw new UncheckedIOException("WAL replay failed in " + walDir, e);
+		}
+		sequence.set(wal.getMaxSeenId());
+		int live = 0;
+		for (Message message : recovered) {
+			if (message.getStatus() == MessageStatus.DEAD_LETTER) {
+				restoreDeadLetter(message);
+				continue;
+			}
+			message.setStatus(MessageStatus.NOT_READY);
+			counters.increment(MessageStatus.NOT_READY);
+			counters.addBytes(track(message));
+			offHeap(message);
+			delayStore.offer(message, 0);
+			++live;
+		}
+		fitCapacity(live);
+		wal.start();
+	}
+
+	private List<Message> restoreSnapshot() {
+		Path path = Path.of(snapshotPath);
+		if (!Files.exists(path)) {
+			return null;
+		}
+		long started = System.nanoTime();
+		QueueSnapshot.Contents contents;
+		try {
+			contents = QueueSnapshot.read(path);
+		} catch (IOException e) {
+			log.error("Ignoring unreadable snapshot {}: {}", path, e.getMessage());
+			return null;
+		}
+
+		List<Message> restored = new ArrayList<>(contents.entries()
+		                                                 .size());
+		int dead = 0;
+		for (SnapshotEntry entry : contents.entries()) {
+			Message message = entry.message();
+			restored.add(message);
+			counters.increment(entry.status());
+			if (entry.status() != MessageStatus.DEAD_LETTER) {
+				counters.addBytes(track(message));
+				offHeap(message);
+			}
+			switch (entry.status()) {
+				case NOT_READY -> delayStore.offer(message, entry.remainingMillis());
+				// Through the delay store so promotion, not init, absorbs a backlog larger than the ring.
+				case READY -> delayStore.offer(message, 0);
+				case IN_PROGRESS -> {
+					consumers.leasedBy(entry.leaseOwner())
+					         .put(message.getId(), message);
+					consumers.lease(message, entry.leaseOwner(), Math.max(1L, entry.remainingMillis()));
+				}
+				case DEAD_LETTER -> {
+					restoreDeadLetter(message);
+					++dead;
+				}
+				default -> log.warn("Snapshot entry id={} has unexpected status {}", message.getId(),
+						entry.status());
+			}
+		}
+		sequence.set(contents.sequence());
+		fitCapacity(restored.size() - dead);
+		log.info("Restored {} message(s) from snapshot {} in {} ms.", restored.size(), path,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+		return restored;
+	}
+
+	private void restoreDeadLetter(Message message) {
+		track(message);
+		deadLetters.put(message.getId(), message);
+		deadLetterCount.incrementAndGet();
+	}
+
+	private void deleteSnapshot() {
+		try {
+			Files.deleteIfExists(Path.of(snapshotPath));
+		} catch (IOException e) {
+			log.warn("Could not delete consumed snapshot {}: {}", snapshotPath, e.getMessage());
+		}
+	}
+
+	private void fitCapacity(int restored) {
+		if (restored > capacity) {
+			log.warn("Restored {} message(s), above capacity {}. Raising capacity to fit.", restored,
+					capacity);
+			capacity = restored;
+		}
+	}
+
+	private void checkpoint() {
+		long now = System.nanoTime();
+		List<SnapshotEntry> entries = new ArrayList<>(getSize());
+
+		List<DelayedMessage> delayed = new ArrayList<>();
+		delayStore.drainAll(delayed);
+		for (DelayedMessage entry : delayed) {
+			entries.add(new SnapshotEntry(entry.getMessage(), MessageStatus.NOT_READY,
+					Math.max(0L, TimeUnit.NANOSECONDS.toMillis(entry.getReadyAtNanos() - now)), null));
+		}
+		List<Message> ready = new ArrayList<>(counters.get(MessageStatus.READY));
+		readyQueue.drainTo(ready, Integer.MAX_VALUE);
+		for (Message message : ready) {
+			entries.add(new SnapshotEntry(message, MessageStatus.READY, 0L, null));
+		}
+		if (fanOut != null) {
+			// Per-group progress is not kept; every group receives these again after a restart.
+			for (FanOutLog.Entry entry : fanOut.entries()) {
+				entries.add(new SnapshotEntry(entry.getMessage(), MessageStatus.READY, 0L, null));
+			}
+		}
+		for (Map.Entry<String, ConcurrentNavigableMap<Long, Message>> leased : consumers.inProgress()) {
+			for (Message message : leased.getValue()
+			                             .values()) {
+				entries.add(new SnapshotEntry(message, MessageStatus.IN_PROGRESS,
+						Math.max(0L, TimeUnit.NANOSECONDS.toMillis(message.getLeaseExpiresAtNanos() - now)),
+						leased.getKey()));
+			}
+		}
+
+		for (Message message : deadLetters.values()) {
+			entries.add(new SnapshotEntry(message, MessageStatus.DEAD_LETTER, 0L, null));
+		}
+
+		try {
+			QueueSnapshot.write(Path.of(snapshotPath), sequence.get(), entries);
+			log.info("Checkpointed {} message(s) to {} in {} ms.", entries.size(), snapshotPath,
+					TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - now));
+		} catch (IOException e) {
+			log.error("Snapshot to {} failed: {}", snapshotPath, e.getMessage());
+		}
+	}
+
+	private CompletableFuture<Void> logEnqueue(Message message) {
+		return wal == null ? CompletableFuture.completedFuture(null) : wal.appendEnqueue(message);
+	}
+
+	private void awaitDurable(CompletableFuture<Void> durable) {
+		try {
+			durable.join();
+		} catch (CompletionException e) {
+			log.error("WAL append failed: {}", e.getCause()
+			                                     .getMessage());
+			throw new ResourceException(HttpStatus.INTERNAL_SERVER_ERROR, "Write-ahead log unavailable");
+		}
 	}
 
 	@Override
 	public void enqueue(Message message) {
 		message.setStatus(MessageStatus.NOT_READY);
 
-		lock.lock();
-		try {
-			long nanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, enqueueTimeoutMs));
-			while (getSize() >= getCapacity()) {
-				if (nanos <= 0L) {
-					log.debug("enqueue -> queue is full (cap={}), timed out after {} ms", getCapacity(),
-							enqueueTimeoutMs);
-					throw new ResourceException(HttpStatus.BAD_REQUEST, "MessageQueue is full");
+		long bytes = track(message);
+
+		// Partitioned queues admit without the lock while there is room; capacity may overshoot by
+		// the number of concurrent producers. The lock is only for waiting on a full queue.
+		if (partitions == 1 || limitHit() != null) {
+			lock();
+			notFullWaiters.incrementAndGet();
+			try {
+				long nanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, enqueueTimeoutMs));
+				AdmissionLimit limit;
+				while ((limit = limitHit()) != null) {
+					if (nanos <= 0L) {
+						log.debug("enqueue -> queue is full ({}), timed out after {} ms", limit,
+								enqueueTimeoutMs);
+						metrics.rejectedFull(limit);
+						throw new ResourceException(HttpStatus.BAD_REQUEST,
+								"MessageQueue is full: " + describe(limit));
+					}
+					nanos = notFull.awaitNanos(nanos);
 				}
-				nanos = notFull.awaitNanos(nanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread()
+				      .interrupt();
+				log.debug("Interrupted while enqueueing");
+				throw new ResourceException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+			} finally {
+				notFullWaiters.decrementAndGet();
+				lock.unlock();
 			}
-		} catch (InterruptedException e) {
-			Thread.currentThread()
-			      .interrupt();
-			log.debug("Interrupted while enqueueing");
-			throw new ResourceException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error");
-		} finally {
-			lock.unlock();
 		}
 
-		delayQueue.offer(new DelayedMessage(message, delayMillis));
+		offHeap(message);
+		message.setId(sequence.incrementAndGet());
+		message.setStageStartedNanos(System.nanoTime());
+		counters.increment(MessageStatus.NOT_READY);
+		counters.addBytes(bytes);
+		metrics.enqueued(1);
+		CompletableFuture<Void> durable = logEnqueue(message);
+		if (delayMillis == 0 && consumers.handOff(message)) {
+			awaitDurable(durable);
+			return;
+		}
+		delayStore.offer(message, delayMillis);
+		scheduleLazyWakeup();
+		awaitDurable(durable);
 		log.info("enqueue -> id={}, from={}, created={}, status={}. notReadySize={}", message.getId(),
-				message.getSenderName(), message.getCreated(), message.getStatus(), delayQueue.size());
+				message.getSenderName(), message.getCreated(), message.getStatus(),
+				counters.get(MessageStatus.NOT_READY));
 	}
 
 	@Override
-	public Message poll(String consumerName, long timeoutMillis) {
-		if (inProgress.containsKey(consumerName)) {
-			throw new IllegalStateException(
-					"Consumer " + consumerName + " is already processing a message");
+	public int enqueueAll(List<Message> messages) {
+		if (messages.isEmpty()) {
+			return 0;
 		}
 
-		Message message = null;
-		try {
-			message =
-					(timeoutMillis <= 0) ? readyQueue.poll() : readyQueue.poll(0, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException e) {
-			log.debug("Interrupted but still poll");
-			throw new ResourceException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error");
+		for (Message message : messages) {
+			track(message);
 		}
-		if (message == null && timeoutMillis > 0) {
-			lock.lock();
+		int accepted = partitions == 1 ? 0 : room(messages);
+		CompletableFuture<Void> durable;
+		if (accepted > 0) {
+			durable = admit(messages, accepted);
+		} else {
+			lock();
+			notFullWaiters.incrementAndGet();
 			try {
-				long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
-				while ((message = readyQueue.poll()) == null) {
+				long nanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, enqueueTimeoutMs));
+				while ((accepted = room(messages)) <= 0) {
 					if (nanos <= 0L) {
-						log.trace("poll -> consumer={} timed out. readySize={}", consumerName,
-								readyQueue.size());
-						throw new ResourceException(HttpStatus.BAD_REQUEST, "MessageQueue is empty");
+						AdmissionLimit limit = limitHit();
+						log.debug("enqueueAll -> queue is full ({}), timed out after {} ms", limit,
+								enqueueTimeoutMs);
+						metrics.rejectedFull(limit == null ? AdmissionLimit.CAPACITY : limit);
+						return 0;
 					}
-					nanos = notEmpty.awaitNanos(nanos);
+					nanos = notFull.awaitNanos(nanos);
 				}
+				durable = admit(messages, accepted);
 			} catch (InterruptedException e) {
-				log.debug(e.getMessage());
+				Thread.currentThread()
+				      .interrupt();
+				log.debug("Interrupted while enqueueing batch");
 				throw new ResourceException(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error");
 			} finally {
+				notFullWaiters.decrementAndGet();
 				lock.unlock();
 			}
 		}
 
-		if (message == null) {
-			log.trace("poll -> consumer={} no message available. readySize={}", consumerName,
-					readyQueue.size());
-			throw new ResourceException(HttpStatus.BAD_REQUEST, "MessageQueue is empty");
-		}
+		scheduleLazyWakeup();
+		awaitDurable(durable);
+		log.info("enqueueAll -> accepted={}/{}. notReadySize={}", accepted, messages.size(),
+				counters.get(MessageStatus.NOT_READY));
+		return accepted;
+	}
 
-		message.setStatus(MessageStatus.IN_PROGRESS);
-		inProgress.put(consumerName, message);
+	private void lock() {
+		long started = System.nanoTime();
 		lock.lock();
-		try {
-			notFull.signal();
-		} finally {
-			lock.unlock();
+		metrics.lockWait(System.nanoTime() - started);
+	}
+
+	/**
+	 * The limit currently blocking admission, or null while there is room. In BYTES mode admission
+	 * stops when payload bytes reach the high watermark and resumes only once they fall back to the
+	 * low watermark, so producers are not woken for every single ack.
+	 */
+	private AdmissionLimit limitHit() {
+		if (getSize() >= capacity) {
+			return AdmissionLimit.CAPACITY;
+		}
+		return admission == AdmissionMode.BYTES && overBudget() ? AdmissionLimit.MEMORY : null;
+	}
+
+	private boolean overBudget() {
+		long bytes = counters.bytes();
+		if (overBudget) {
+			if (bytes <= (long) (memoryBudget * memoryLowWatermark)) {
+				overBudget = false;
+			}
+		} else if (bytes >= (long) (memoryBudget * memoryHighWatermark)) {
+			overBudget = true;
+		}
+		return overBudget;
+	}
+
+	/**
+	 * How many leading messages of the batch fit. The last admitted message may carry the payload
+	 * past the high watermark, which then blocks the next admission.
+	 */
+	private int room(List<Message> messages) {
+		int room = Math.min(capacity - getSize(), messages.size());
+		if (room <= 0 || admission != AdmissionMode.BYTES) {
+			return Math.max(0, room);
+		}
+		if (overBudget()) {
+			return 0;
+		}
+		long free = (long) (memoryBudget * memoryHighWatermark) - counters.bytes();
+		int fit = 0;
+		while (fit < room && free > 0) {
+			free -= messages.get(fit++)
+			                .getPayloadBytes();
 		}
+		return fit;
+	}
+
+	private String describe(AdmissionLimit limit) {
+		return switch (limit) {
+			case CAPACITY -> "capacity of " + capacity + " messages reached";
+			case MEMORY -> "memory budget of " + memoryBudget + " bytes reached (" + counters.bytes()
+			               + " bytes held)";
+		};
+	}
 
-		log.debug("poll -> consumer={} got id={}, created={}, readySize={}, inProgressSize={}",
-				consumerName, message.getId(), message.getCreated(), readyQueue.size(), inProgress.size());
-		return message;
+	/**
+	 * Estimates the heap held by the message's strings (two bytes per char) and remembers it on the
+	 * message, so release subtracts exactly what admission added.
+	 */
+	private static int track(Message message) {
+		int chars = (message.getContent() == null ? 0 : message.getContent()
+		                                                        .length()) +
+		            (message.getSenderName() == null ? 0 : message.getSenderName()
+		                                                          .length());
+		message.setPayloadBytes(2 * chars);
+		return message.getPayloadBytes();
+	}
+
+	/**
+	 * Moves the content off-heap when the arena is enabled. The WAL writer and readers go through
+	 * {@link Message#getContent()}, so they see the same string either way.
+	 */
+	private void offHeap(Message message) {
+		if (arena != null) {
+			message.moveOffHeap(arena);
+		}
+	}
+
+	private CompletableFuture<Void> admit(List<Message> messages, int accepted) {
+		metrics.enqueued(accepted);
+		counters.add(MessageStatus.NOT_READY, accepted);
+		CompletableFuture<Void> durable = null;
+		long now = System.nanoTime();
+		for (int i = 0; i < accepted; ++i) {
+			Message message = messages.get(i);
+			counters.addBytes(message.getPayloadBytes());
+			offHeap(message);
+			message.setId(sequence.incrementAndGet());
+			message.setStatus(MessageStatus.NOT_READY);
+			message.setStageStartedNanos(now);
+			durable = logEnqueue(message);
+			delayStore.offer(message, delayMillis);
+		}
+		return durable;
+	}
+
+	@Override
+	public CompletableFuture<List<Message>> pollAsync(String consumerName, int max,
+			long timeoutMillis) {
+		requireDirect();
+		return consumers.pollAsync(consumerName, max, timeoutMillis);
+	}
+
+	private void requireDirect() {
+		if (fanOut != null) {
+			throw new ResourceException(HttpStatus.BAD_REQUEST,
+					"Queue " + name + " fans out to consumer groups " + groups.keySet()
+					+ "; use <queue>:<group>");
+		}
+	}
+
+	@Override
+	public MessageQueueService group(String group) {
+		ConsumerGroup consumerGroup = groups.get(group);
+		if (consumerGroup == null) {
+			throw new ResourceException(HttpStatus.BAD_REQUEST,
+					"Queue " + name + " has no consumer group " + group);
+		}
+		return consumerGroup;
+	}
+
+	@Override
+	public boolean cancelPoll(String consumerName, CompletableFuture<List<Message>> poll) {
+		return consumers.cancelPoll(consumerName, poll);
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, long delayMillis) {
+		return timer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private boolean hasWaiters() {
+		if (consumers.hasWaiters()) {
+			return true;
+		}
+		for (ConsumerGroup group : groups.values()) {
+			if (group.hasWaiters()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void scheduleLazyWakeup() {
+		if (promotionMode != PromotionMode.LAZY || !hasWaiters() || delayStore.size() == 0 ||
+		    !lazyWakeupScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		long nanos = Math.min(delayStore.nanosUntilNextDue(), TimeUnit.MILLISECONDS.toNanos(delayMillis));
+		timer.schedule(() -> {
+			lazyWakeupScheduled.set(false);
+			promoteDue();
+			scheduleLazyWakeup();
+		}, Math.max(TimeUnit.MILLISECONDS.toNanos(1), nanos), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void handleAck(String consumerName, Status status, Long retryDelayMillis) {
+		requireDirect();
+		settle(consumerName, status, consumers.releaseAll(consumerName), retryDelayMillis);
+	}
+
+	@Override
+	public void handleAck(String consumerName, Status status, Collection<Long> ids,
+			Long retryDelayMillis) {
+		requireDirect();
+		settle(consumerName, status, consumers.release(consumerName, ids), retryDelayMillis);
 	}
 
 	@Override
-	public void handleAck(String consumerName, Status status) {
+	public void handleAckUpTo(String consumerName, Status status, long upToId,
+			Long retryDelayMillis) {
+		requireDirect();
+		settle(consumerName, status, consumers.releaseUpTo(consumerName, upToId), retryDelayMillis);
+	}
+
+	private void settle(String consumerName, Status status, List<Message> messages,
+			Long retryDelayMillis) {
+		for (Message message : messages) {
+			consumers.cancelLease(message);
+		}
 		switch (status) {
-			case ACK -> ack(consumerName);
-			case NACK -> nack(consumerName);
+			case ACK -> ack(consumerName, messages);
+			case NACK -> nack(consumerName, messages, retryDelayMillis);
 			default -> log.warn("Unknown status {} by consumer={}", status, consumerName);
 		}
 	}
 
-	private void ack(String consumerName) {
-		Message message = inProgress.remove(consumerName);
-		if (message == null) {
-			log.warn("ack -> consumer={} has no in-progress message. Nothing to ack.", consumerName);
+	private void ack(String consumerName, List<Message> messages) {
+		if (messages.isEmpty()) {
+			log.warn("ack -> consumer={} has no matching in-progress message. Nothing to ack.",
+					consumerName);
 			throw new ResourceException(HttpStatus.BAD_REQUEST, "no in-progress message. Nothing to ack");
 		}
-		log.info("ack -> consumer={} id={} removed. inProgressSize={}", consumerName, message.getId(),
-				inProgress.size());
+		counters.add(MessageStatus.IN_PROGRESS, -messages.size());
+		for (Message message : messages) {
+			counters.addBytes(-message.getPayloadBytes());
+			message.setLeaseOwner(null);
+			message.releasePayload();
+			if (message.getStageStartedNanos() != 0L) {
+				latencies.record(MessageStatus.IN_PROGRESS,
+						System.nanoTime() - message.getStageStartedNanos());
+			}
+			latencies.recordEndToEnd(message.getCreated());
+			if (wal != null) {
+				wal.appendAck(message.getId());
+			}
+		}
+		metrics.acked(messages.size());
+		signalNotFull();
+		log.info("ack -> consumer={} acked={} removed. inProgressSize={}", consumerName,
+				messages.size(), counters.get(MessageStatus.IN_PROGRESS));
 	}
 
-	public void nack(String consumerName) {
-		Message message = inProgress.remove(consumerName);
-		if (message == null) {
-			log.warn("nack -> consumer={} has no in-progress message. Nothing to return.", consumerName);
+	private void nack(String consumerName, List<Message> messages, Long retryDelayMillis) {
+		if (messages.isEmpty()) {
+			log.warn("nack -> consumer={} has no matching in-progress message. Nothing to return.",
+					consumerName);
 			throw new ResourceException(HttpStatus.BAD_REQUEST,
 					"has no in-progress message. Nothing to nack");
 		}
-		message.setStatus(MessageStatus.READY);
-		readyQueue.offer(message);
-		log.info("nack -> consumer={} id={} returned to READY. readySize={}, inProgressSize={}",
-				consumerName, message.getId(), readyQueue.size(), inProgress.size());
+		int delayed = 0;
+		for (Message message : messages) {
+			message.setLeaseOwner(null);
+			if (exhausted(message.getDeliveries())) {
+				deadLetter(message);
+				continue;
+			}
+			if (wal != null) {
+				wal.appendNack(message.getId());
+			}
+			long delay = retryDelayMillis != null ? retryDelayMillis : backoff(message.getDeliveries());
+			if (delay > 0) {
+				transition(message, MessageStatus.NOT_READY);
+				delayStore.offer(message, delay);
+				++delayed;
+			} else {
+				markReady(message);
+			}
+		}
+		metrics.nacked(messages.size());
+		if (delayed > 0) {
+			scheduleLazyWakeup();
+		}
+		log.info("nack -> consumer={} nacked={} ({} delayed). readySize={}, inProgressSize={}",
+				consumerName, messages.size(), delayed, counters.get(MessageStatus.READY),
+				counters.get(MessageStatus.IN_PROGRESS));
+	}
+
+	@Override
+	public int extendLease(String consumerName, Collection<Long> ids, long leaseMillis) {
+		requireDirect();
+		return consumers.extendLease(consumerName, ids, leaseMillis);
+	}
+
+	@Override
+	public long getExpiredLeases() {
+		return consumers.getExpiredLeases();
+	}
+
+	@Override
+	public StageLatencies getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * The last snapshot taken by the timer, so monitoring reads never touch the data path.
+	 */
+	@Override
+	public MessageQueueMetric getMetric() {
+		return metricSnapshot;
+	}
+
+	private void refreshMetric() {
+		metricSnapshot = new MessageQueueMetric(capacity, counters.size(), consumers.getExpiredLeases(),
+				counters.get(MessageStatus.NOT_READY), counters.get(MessageStatus.READY),
+				counters.get(MessageStatus.IN_PROGRESS), deadLetterCount.get(), counters.bytes(),
+				admission == AdmissionMode.BYTES ? memoryBudget : 0L);
+	}
+
+	QueueMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Records the time spent in the stage being left. Restored messages carry no start time, so
+	 * their first stage after a restart is not sampled.
+	 */
+	private void transition(Message message, MessageStatus next) {
+		if (message.getStatus() == next) {
+			return;
+		}
+		long now = System.nanoTime();
+		if (message.getStageStartedNanos() != 0L) {
+			latencies.record(message.getStatus(), now - message.getStageStartedNanos());
+		}
+		message.setStageStartedNanos(now);
+		if (next == MessageStatus.DEAD_LETTER) {
+			counters.addBytes(-message.getPayloadBytes());
+		} else if (message.getStatus() == MessageStatus.DEAD_LETTER) {
+			counters.addBytes(message.getPayloadBytes());
+		}
+		counters.move(message.getStatus(), next);
+		message.setStatus(next);
+	}
+
+	void watch(LeaseExpiry expiry) {
+		leases.schedule(expiry);
+	}
+
+	void unwatch(LeaseExpiry expiry) {
+		leases.cancel(expiry);
+	}
+
+	private void expire(LeaseExpiry expiry) {
+		if (expiry instanceof GroupLeaseExpiry groupExpiry) {
+			groups.get(groupExpiry.getGroup())
+			      .expire(groupExpiry);
+			return;
+		}
+		Message message = consumers.expire(expiry);
+		if (message == null) {
+			return;
+		}
+		if (exhausted(message.getDeliveries())) {
+			deadLetter(message);
+			return;
+		}
+		markReady(message);
+		log.info("expire -> consumer={} id={} lease expired, returned to READY. readySize={}",
+				expiry.getConsumerName(), message.getId(), counters.get(MessageStatus.READY));
+	}
+
+	long backoff(int deliveries) {
+		if (retryBaseDelayMs <= 0) {
+			return 0L;
+		}
+		int attempt = Math.max(0, deliveries - 1);
+		double delay = Math.min(retryMaxDelayMs, retryBaseDelayMs * Math.pow(retryMultiplier, attempt));
+		double random = ThreadLocalRandom.current()
+		                                 .nextDouble();
+		return (long) (delay * (1.0 - retryJitter * random));
+	}
+
+	boolean exhausted(int deliveries) {
+		return maxDeliveries > 0 && deliveries >= maxDeliveries;
+	}
+
+	/**
+	 * Drops one group's reference to a fan-out message. The message is freed once every group has
+	 * released it, and dead-lettered instead if any group gave up on it.
+	 */
+	void release(GroupDelivery delivery, boolean failed) {
+		FanOutLog.Entry entry = fanOut.release(delivery.getPosition(), failed);
+		if (entry == null) {
+			return;
+		}
+		Message message = entry.getMessage();
+		if (entry.isFailed()) {
+			message.setDeliveries(Math.max(message.getDeliveries(), maxDeliveries));
+			deadLetter(message);
+			return;
+		}
+		counters.decrement(MessageStatus.READY);
+		counters.addBytes(-message.getPayloadBytes());
+		message.releasePayload();
+		if (wal != null) {
+			wal.appendAck(message.getId());
+		}
+		signalNotFull();
+	}
+
+	private void deadLetter(Message message) {
+		// Dead letters are few and listed by the DLQ API, so they keep their content on the heap.
+		message.moveOnHeap();
+		transition(message, MessageStatus.DEAD_LETTER);
+		if (wal != null) {
+			wal.appendDeadLetter(message.getId());
+		}
+		deadLetters.put(message.getId(), message);
+		deadLettered.incrementAndGet();
+		if (deadLetterCount.incrementAndGet() > deadLetterCapacity) {
+			Map.Entry<Long, Message> oldest = deadLetters.pollFirstEntry();
+			if (oldest != null) {
+				deadLetterCount.decrementAndGet();
+				deadLettersDropped.incrementAndGet();
+				if (wal != null) {
+					wal.appendAck(oldest.getKey());
+				}
+				log.warn("deadLetter -> store full (cap={}), dropped id={}", deadLetterCapacity,
+						oldest.getKey());
+			}
+		}
+		signalNotFull();
+		log.warn("deadLetter -> id={} from={} moved to DLQ after {} deliveries. deadLetters={}",
+				message.getId(), message.getSenderName(), message.getDeliveries(), deadLetterCount.get());
+	}
+
+	@Override
+	public List<Message> getDeadLetters(long afterId, int limit) {
+		List<Message> page = new ArrayList<>(Math.min(limit, deadLetterCount.get()));
+		for (Message message : deadLetters.tailMap(afterId, false)
+		                                  .values()) {
+			if (page.size() >= limit) {
+				break;
+			}
+			page.add(message);
+		}
+		return page;
+	}
+
+	@Override
+	public int requeueDeadLetters(Collection<Long> ids) {
+		int requeued = 0;
+		for (Long id : ids == null ? deadLetters.keySet() : ids) {
+			Message message = deadLetters.remove(id);
+			if (message == null) {
+				continue;
+			}
+			deadLetterCount.decrementAndGet();
+			message.setDeliveries(0);
+			offHeap(message);
+			if (wal != null) {
+				wal.appendNack(id);
+			}
+			markReady(message);
+			++requeued;
+		}
+		deadLettersRequeued.addAndGet(requeued);
+		log.info("dlq -> requeued={}. deadLetters={}, readySize={}", requeued, deadLetterCount.get(),
+				counters.get(MessageStatus.READY));
+		return requeued;
+	}
+
+	@Override
+	public int purgeDeadLetters(Collection<Long> ids) {
+		int purged = 0;
+		for (Long id : ids == null ? deadLetters.keySet() : ids) {
+			if (deadLetters.remove(id) == null) {
+				continue;
+			}
+			deadLetterCount.decrementAndGet();
+			if (wal != null) {
+				wal.appendAck(id);
+			}
+			++purged;
+		}
+		deadLettersPurged.addAndGet(purged);
+		log.info("dlq -> purged={}. deadLetters={}", purged, deadLetterCount.get());
+		return purged;
+	}
+
+	@Override
+	public int getDeadLetterCount() {
+		return deadLetterCount.get();
+	}
+
+	@Override
+	public long getDeadLettered() {
+		return deadLettered.get();
+	}
+
+	@Override
+	public long getDeadLettersRequeued() {
+		return deadLettersRequeued.get();
+	}
+
+	@Override
+	public long getDeadLettersPurged() {
+		return deadLettersPurged.get();
+	}
+
+	@Override
+	public long getDeadLettersDropped() {
+		return deadLettersDropped.get();
+	}
+
+	int promoteDue() {
+		if (promotionMode != PromotionMode.LAZY || delayStore.size() == 0) {
+			return 0;
+		}
+		List<Message> due = new ArrayList<>();
+		delayStore.drainDue(due, promotionBatchSize);
+		for (Message message : due) {
+			markReady(message);
+		}
+		if (!due.isEmpty()) {
+			log.debug("promoteDue -> moved {} to READY. notReadySize={}, readySize={}", due.size(),
+					counters.get(MessageStatus.NOT_READY), counters.get(MessageStatus.READY));
+		}
+		return due.size();
+	}
+
+	private void markReady(Message message) {
+		if (fanOut != null) {
+			transition(message, MessageStatus.READY);
+			fanOut.append(message);
+			for (ConsumerGroup group : groups.values()) {
+				group.dispatchWaiters();
+			}
+			return;
+		}
+		if (consumers.handOff(message)) {
+			return;
+		}
+		offerReady(message);
+		consumers.dispatchWaiters();
+	}
+
+	private void offerReady(Message message) {
+		transition(message, MessageStatus.READY);
+		while (!readyQueue.offer(message)) {
+			Thread.yield();
+		}
+	}
+
+	private void signalNotFull() {
+		if (notFullWaiters.get() == 0) {
+			return;
+		}
+		lock.lock();
+		try {
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
 	}
 
 	@Override
 	public int getSize() {
-		return this.delayQueue.size() + this.readyQueue.size() + this.inProgress.size();
+		return counters.size();
 	}
 
 	@Override
@@ -197,41 +1132,86 @@ public class MessageQueueImpl implements MessageQueueService {
 		this.capacity = capacity;
 	}
 
+	@Override
+	public AdmissionMode getAdmission() {
+		return admission;
+	}
+
+	@Override
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	@Override
+	public void setMemoryBudget(long memoryBudget) {
+		long previous = this.memoryBudget;
+		this.memoryBudget = memoryBudget;
+		if (memoryBudget > previous) {
+			signalNotFull();
+		}
+	}
+
+	@Override
+	public long getPayloadBytes() {
+		return counters.bytes();
+	}
+
+	@Override
+	public String getAdmissionLimit() {
+		AdmissionLimit limit = limitHit();
+		return limit == null ? null : describe(limit);
+	}
+
 	@Override
 	public void close() {
 		if (!running.compareAndSet(true, false)) {
 			return;
 		}
-		if (promoterThread != null) {
-			promoterThread.interrupt();
+		// The checkpoint drains the stores, so nothing may still be moving a message between them.
+		stop(promoterThread);
+		stop(leaseReaperThread);
+		if (timer != null) {
+			timer.shutdownNow();
+			try {
+				timer.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread()
+				      .interrupt();
+			}
+		}
+		if (snapshotEnabled) {
+			checkpoint();
+		}
+		if (wal != null) {
+			wal.close();
 		}
 		log.info("MessageQueue shutting down...");
 	}
 
+	private static void stop(Thread thread) {
+		if (thread == null) {
+			return;
+		}
+		thread.interrupt();
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+			      .interrupt();
+		}
+	}
+
 	private void promoteLoop() {
 		log.debug("Promoter thread started. delayMillis={}ms", delayMillis);
-		final long stepMs = Math.max(1L, promoterWaitStepMs);
 		while (running.get()) {
 			try {
-				DelayedMessage delayed = delayQueue.take();
-				Message message = delayed.getMessage();
-				lock.lockInterruptibly();
-				try {
-					while (running.get() && getSize() >= capacity) {
-						notFull.await(stepMs, TimeUnit.MILLISECONDS);
-					}
-				} finally {
-					lock.unlock();
-				}
-				if (!running.get()) {
-					break;
-				}
-
-				message.setStatus(MessageStatus.READY);
-				readyQueue.offer(message);
+				// Promotion does not change the size; capacity is enforced at admission only.
+				// A message taken as shutdown begins still goes to READY, where the checkpoint finds it.
+				Message message = delayStore.take();
+				markReady(message);
 
-				log.info("Promoter -> moved to READY. notReadySize={}, readySize={}", delayQueue.size(),
-						readyQueue.size());
+				log.info("Promoter -> moved to READY. notReadySize={}, readySize={}",
+						counters.get(MessageStatus.NOT_READY), counters.get(MessageStatus.READY));
 			} catch (InterruptedException e) {
 				if (!running.get()) {
 					break;
@@ -245,4 +1225,77 @@ public class MessageQueueImpl implements MessageQueueService {
 		}
 		log.debug("Promoter thread stopped.");
 	}
+
+	private void reapLoop() {
+		log.debug("Lease reaper thread started. visibilityTimeoutMs={}ms", visibilityTimeoutMs);
+		while (running.get()) {
+			try {
+				LockSupport.parkNanos(this, leases.getTickNanos());
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				leases.expire(System.nanoTime(), this::expire);
+			} catch (InterruptedException e) {
+				if (!running.get()) {
+					break;
+				}
+				log.debug("Lease reaper interrupted but still running.");
+			} catch (Throwable t) {
+				log.error("Lease reaper loop error: {}", t.getMessage(), t);
+			}
+		}
+		log.debug("Lease reaper thread stopped.");
+	}
+
+	/**
+	 * Hands out the ready queue to consumers polling the queue directly.
+	 */
+	private final class DirectConsumers extends ConsumerLeases<Message> {
+
+		DirectConsumers() {
+			super("queue=" + name, MessageQueueImpl.this, maxInFlight, visibilityTimeoutMs);
+		}
+
+		@Override
+		boolean hasReady() {
+			return readyQueue.size() > 0;
+		}
+
+		@Override
+		int drainTo(List<Message> sink, int max, String consumerName) {
+			return readyQueue.drainTo(sink, max, consumerName);
+		}
+
+		@Override
+		void putBack(List<Message> messages) {
+			for (Message message : messages) {
+				offerReady(message);
+			}
+		}
+
+		@Override
+		Message deliver(Message message) {
+			transition(message, MessageStatus.IN_PROGRESS);
+			message.setDeliveries(message.getDeliveries() + 1);
+			return message;
+		}
+
+		@Override
+		void delivered(String consumerName, List<Message> messages) {
+			metrics.polled(messages.size());
+			log.debug("poll -> consumer={} got {} message(s), readySize={}, inProgressSize={}",
+					consumerName, messages.size(), counters.get(MessageStatus.READY),
+					counters.get(MessageStatus.IN_PROGRESS));
+		}
+
+		@Override
+		long id(Message message) {
+			return message.getId();
+		}
+
+		@Override
+		LeaseExpiry expiry(long id, String consumerName, long expiresAtNanos) {
+			return new LeaseExpiry(id, consumerName, expiresAtNanos);
+		}
+	}
 }
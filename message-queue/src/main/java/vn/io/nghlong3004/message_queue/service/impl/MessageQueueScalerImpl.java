@@ -1,61 +1,83 @@
 package vn.io.nghlong3004.message_queue.service.impl;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryUsage;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
-import org.springframework.stereotype.Service;
 import vn.io.nghlong3004.message_queue.exception.ResourceException;
+import vn.io.nghlong3004.message_queue.metrics.QueueMetrics;
+import vn.io.nghlong3004.message_queue.queue.AdmissionMode;
+import vn.io.nghlong3004.message_queue.registry.QueueSettings;
 import vn.io.nghlong3004.message_queue.service.MessageQueueScalerService;
 import vn.io.nghlong3004.message_queue.service.MessageQueueService;
 
 @Slf4j
-@Service
-@RequiredArgsConstructor
 public class MessageQueueScalerImpl implements MessageQueueScalerService {
 
 	private ScheduledExecutorService scheduledExecutorService;
 	private final MessageQueueService messageQueue;
+	private final QueueMetrics metrics;
+	private final String queueName;
 
-	@Value("${message-queue.scaler.capacity.min}")
-	private int minCapacity;
-	@Value("${message-queue.scaler.capacity.max}")
-	private int maxCapacity;
-	@Value("${message-queue.scaler.grow.factor}")
-	private double growFactor;
-	@Value("${message-queue.scaler.shrink.factor}")
-	private double shrinkFactor;
-	@Value("${message-queue.scaler.window-ms}")
-	private long windowMs;
-	@Value("${message-queue.scaler.period-ms}")
-	private long periodMs;
-	@Value("${message-queue.scaler.peak.threshold}")
-	private int peakThreshold;
-	@Value("${message-queue.scaler.trough.threshold}")
-	private int troughThreshold;
-	@Value("${message-queue.scaler.cooldown-ms}")
-	private long cooldownMs;
+	private final int minCapacity;
+	private final int maxCapacity;
+	private final double growFactor;
+	private final double shrinkFactor;
+	private final long windowMs;
+	private final long periodMs;
+	private final int peakThreshold;
+	private final int troughThreshold;
+	private final long cooldownMs;
+	private final long minMemoryBytes;
+	private final long maxMemoryBytes;
+	private final double growHeadroom;
+	private final double shrinkHeadroom;
+	private final double highWatermark;
+	private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
 
 	private final AtomicBoolean running = new AtomicBoolean(false);
 
 	private final Deque<Long> peakTimes = new ArrayDeque<>();
 	private final Deque<Long> troughTimes = new ArrayDeque<>();
 	private long lastScaleAt = 0;
+	private long lastBudgetScaleAt = 0;
+
+	public MessageQueueScalerImpl(MessageQueueService messageQueue, QueueSettings settings,
+			QueueMetrics metrics) {
+		this.messageQueue = messageQueue;
+		this.metrics = metrics;
+		this.queueName = settings.getName();
+		this.minCapacity = settings.getScalerMinCapacity();
+		this.maxCapacity = settings.getScalerMaxCapacity();
+		this.growFactor = settings.getScalerGrowFactor();
+		this.shrinkFactor = settings.getScalerShrinkFactor();
+		this.windowMs = settings.getScalerWindowMs();
+		this.periodMs = settings.getScalerPeriodMs();
+		this.peakThreshold = settings.getScalerPeakThreshold();
+		this.troughThreshold = settings.getScalerTroughThreshold();
+		this.cooldownMs = settings.getScalerCooldownMs();
+		this.minMemoryBytes = settings.getScalerMinMemoryBytes();
+		this.maxMemoryBytes = settings.getScalerMaxMemoryBytes();
+		this.growHeadroom = settings.getScalerGrowHeadroom();
+		this.shrinkHeadroom = settings.getScalerShrinkHeadroom();
+		this.highWatermark = settings.getMemoryHighWatermark();
+	}
 
 	@Override
 	public void start() {
 		if (running.compareAndSet(false, true)) {
-			log.info("Starting MessageQueueScaler with period={} ms", periodMs);
+			log.info("Starting MessageQueueScaler for queue={} with period={} ms", queueName, periodMs);
 			if (scheduledExecutorService == null || scheduledExecutorService.isShutdown() ||
 			    scheduledExecutorService.isTerminated()) {
 				scheduledExecutorService = Executors.newSingleThreadScheduledExecutor(r -> {
-					Thread t = new Thread(r, "message-queue-scaler");
+					Thread t = new Thread(r, "message-queue-scaler-" + queueName);
 					t.setDaemon(true);
 					return t;
 				});
@@ -63,6 +85,7 @@ public class MessageQueueScalerImpl implements MessageQueueScalerService {
 			peakTimes.clear();
 			troughTimes.clear();
 			lastScaleAt = 0;
+			lastBudgetScaleAt = 0;
 			scheduledExecutorService.scheduleAtFixedRate(this::tick, periodMs, periodMs,
 					TimeUnit.MILLISECONDS);
 		} else {
@@ -87,6 +110,11 @@ public class MessageQueueScalerImpl implements MessageQueueScalerService {
 		}
 	}
 
+	@Override
+	public boolean isRunning() {
+		return running.get();
+	}
+
 	private void tick() {
 		int capacity = messageQueue.getCapacity();
 		int size = messageQueue.getSize();
@@ -94,6 +122,39 @@ public class MessageQueueScalerImpl implements MessageQueueScalerService {
 
 		peak(now, size, capacity);
 		trough(now, size, capacity);
+		if (messageQueue.getAdmission() == AdmissionMode.BYTES) {
+			budget(now);
+		}
+	}
+
+	/**
+	 * Sizes the byte budget from heap headroom: shrinks it while the heap is tight, and grows it while
+	 * there is headroom and the queue is actually holding the budget up.
+	 */
+	private void budget(long now) {
+		if ((now - lastBudgetScaleAt) < cooldownMs) {
+			return;
+		}
+		MemoryUsage heap = memory.getHeapMemoryUsage();
+		long max = heap.getMax() > 0 ? heap.getMax() : heap.getCommitted();
+		double headroom = 1.0 - (double) heap.getUsed() / max;
+		long budget = messageQueue.getMemoryBudget();
+		long newBudget = budget;
+		if (headroom < shrinkHeadroom) {
+			newBudget = Math.max(minMemoryBytes, (long) Math.floor(budget / shrinkFactor));
+		} else if (headroom > growHeadroom &&
+		           messageQueue.getPayloadBytes() >= (long) (budget * highWatermark)) {
+			newBudget = Math.min(maxMemoryBytes, (long) Math.ceil(budget * growFactor));
+		}
+		if (newBudget == budget) {
+			return;
+		}
+		messageQueue.setMemoryBudget(newBudget);
+		lastBudgetScaleAt = now;
+		metrics.budgetScaled(newBudget > budget);
+		log.info("Scale {} memory budget queue={}: {} -> {} bytes (heap headroom {}%)",
+				newBudget > budget ? "UP" : "DOWN", queueName, budget, newBudget,
+				Math.round(headroom * 100));
 	}
 
 	private void trough(long now, int size, int capacity) {
@@ -106,7 +167,8 @@ public class MessageQueueScalerImpl implements MessageQueueScalerService {
 					messageQueue.setCapacity(newCap);
 					lastScaleAt = now;
 					troughTimes.clear();
-					log.info("Scale DOWN: {} -> {}", capacity, newCap);
+					metrics.scaled(false);
+					log.info("Scale DOWN queue={}: {} -> {}", queueName, capacity, newCap);
 				}
 			}
 		}
@@ -123,7 +185,8 @@ public class MessageQueueScalerImpl implements MessageQueueScalerService {
 					messageQueue.setCapacity(newCap);
 					lastScaleAt = now;
 					peakTimes.clear();
-					log.info("Scale UP: {} -> {}", capacity, newCap);
+					metrics.scaled(true);
+					log.info("Scale UP queue={}: {} -> {}", queueName, capacity, newCap);
 				}
 			}
 		}
@@ -0,0 +1,158 @@
+package vn.io.nghlong3004.message_queue.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.MessageStatus;
+
+/**
+ * Shutdown checkpoint of the whole queue, written and read as one sequential stream.
+ *
+ * <p>Layout: {@code int magic | int version | long sequence | int count | entries | long crc32c},
+ * each entry being {@code byte status | long id | long remainingMillis | string leaseOwner |
+ * string senderName | string content | long created | byte priority}. Strings are
+ * {@code int length | UTF-8 bytes} with length -1 for null. Version 1 files have no priority byte
+ * and still load.
+ */
+public final class QueueSnapshot {
+
+	private static final int MAGIC = 0x4D51534E;
+	private static final int VERSION = 2;
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final MessageStatus[] STATUSES = MessageStatus.values();
+
+	public record Contents(long sequence, List<SnapshotEntry> entries) {
+
+	}
+
+	private QueueSnapshot() {
+	}
+
+	public static void write(Path path, long sequence, List<SnapshotEntry> entries)
+			throws IOException {
+		Path parent = path.toAbsolutePath()
+		                  .getParent();
+		Files.createDirectories(parent);
+		Path tmp = parent.resolve(path.getFileName() + ".tmp");
+		try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+			CRC32C crc = new CRC32C();
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new CheckedOutputStream(file, crc), BUFFER_SIZE));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(sequence);
+			out.writeInt(entries.size());
+			for (SnapshotEntry entry : entries) {
+				Message message = entry.message();
+				out.writeByte(entry.status()
+				                   .ordinal());
+				out.writeLong(message.getId());
+				out.writeLong(entry.remainingMillis());
+				writeString(out, entry.leaseOwner());
+				writeString(out, message.getSenderName());
+				writeString(out, message.getContent());
+				out.writeLong(message.getCreated() == null ? 0L : message.getCreated()
+				                                                         .getTime());
+				out.writeByte(message.getPriority());
+			}
+			out.flush();
+			new DataOutputStream(file).writeLong(crc.getValue());
+			file.getFD()
+			    .sync();
+		}
+		Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public static Contents read(Path path) throws IOException {
+		verifyChecksum(path);
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE))) {
+			int version;
+			if (in.readInt() != MAGIC || (version = in.readInt()) < 1 || version > VERSION) {
+				throw new IOException("Not a message-queue snapshot: " + path);
+			}
+			long sequence = in.readLong();
+			int count = in.readInt();
+			List<SnapshotEntry> entries = new ArrayList<>(count);
+			for (int i = 0; i < count; ++i) {
+				MessageStatus status = STATUSES[in.readByte()];
+				long id = in.readLong();
+				long remainingMillis = in.readLong();
+				String leaseOwner = readString(in);
+				Message message = Message.builder()
+				                         .id(id)
+				                         .senderName(readString(in))
+				                         .content(readString(in))
+				                         .created(new Timestamp(in.readLong()))
+				                         .priority(version >= 2 ? in.readByte() : 0)
+				                         .status(status)
+				                         .build();
+				entries.add(new SnapshotEntry(message, status, remainingMillis, leaseOwner));
+			}
+			return new Contents(sequence, entries);
+		}
+	}
+
+	private static void verifyChecksum(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long bodyLength = channel.size() - Long.BYTES;
+			if (bodyLength < 0) {
+				throw new IOException("Truncated snapshot: " + path);
+			}
+			CRC32C crc = new CRC32C();
+			ByteBuffer chunk = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			long position = 0;
+			while (position < bodyLength) {
+				chunk.clear()
+				     .limit((int) Math.min(BUFFER_SIZE, bodyLength - position));
+				int read = channel.read(chunk, position);
+				if (read < 0) {
+					throw new IOException("Truncated snapshot: " + path);
+				}
+				position += read;
+				crc.update(chunk.flip());
+			}
+			ByteBuffer trailer = ByteBuffer.allocate(Long.BYTES);
+			channel.read(trailer, bodyLength);
+			if (trailer.hasRemaining() || trailer.getLong(0) != crc.getValue()) {
+				throw new IOException("Snapshot checksum mismatch: " + path);
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,12 @@
+package vn.io.nghlong3004.message_queue.snapshot;
+
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.MessageStatus;
+
+/**
+ * {@code remainingMillis} is the delay left for NOT_READY and the lease left for IN_PROGRESS.
+ */
+public record SnapshotEntry(Message message, MessageStatus status, long remainingMillis,
+                            String leaseOwner) {
+
+}
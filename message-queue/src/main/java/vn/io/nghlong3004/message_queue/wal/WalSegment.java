@@ -0,0 +1,59 @@
+package vn.io.nghlong3004.message_queue.wal;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import lombok.Getter;
+
+@Getter
+class WalSegment {
+
+	private final long index;
+	private final Path path;
+	private FileChannel channel;
+	private long size;
+	private int live;
+	private int enqueued;
+	private boolean pinned;
+
+	WalSegment(long index, Path path) {
+		this.index = index;
+		this.path = path;
+	}
+
+	static String fileName(long index) {
+		return String.format("wal-%020d.log", index);
+	}
+
+	void openForAppend() throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.APPEND);
+		size = channel.size();
+	}
+
+	void written(long bytes) {
+		size += bytes;
+	}
+
+	void retain() {
+		++live;
+		++enqueued;
+	}
+
+	void release() {
+		--live;
+	}
+
+	void pin() {
+		pinned = true;
+	}
+
+	void closeChannel() throws IOException {
+		if (channel != null) {
+			channel.force(false);
+			channel.close();
+			channel = null;
+		}
+	}
+}
@@ -0,0 +1,486 @@
+package vn.io.nghlong3004.message_queue.wal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import lombok.extern.slf4j.Slf4j;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.MessageStatus;
+
+/**
+ * Append-only, segmented log of ENQUEUE / ACK / NACK / DEAD records.
+ *
+ * <p>A single writer thread drains every record queued since its last write, writes them and
+ * issues one {@code force} for the whole group, so concurrent producers share an fsync. A segment is
+ * deleted once it and every older segment hold no unacknowledged ENQUEUE; deleting only a prefix
+ * keeps every ACK that still matters on disk. So that a few long-lived messages (a stuck lease, a
+ * dead letter) do not pin every later segment, the oldest segment is compacted once at most a
+ * quarter of its ENQUEUEs are still live: those records are copied unchanged to the active segment,
+ * followed by a DEAD record where needed, and the old segment is then deleted. Replay keeps the last
+ * ENQUEUE seen for an id.
+ *
+ * <p>Record layout: {@code int length | int crc32c | byte type | long id | payload}, where length
+ * and crc cover everything after the crc. An ENQUEUE payload is {@code string senderName | string
+ * content | long created | byte priority}; records written before priorities existed stop after
+ * {@code created} and replay as priority 0.
+ */
+@Slf4j
+public class WriteAheadLog implements AutoCloseable {
+
+	private static final byte ENQUEUE = 1;
+	private static final byte ACK = 2;
+	private static final byte NACK = 3;
+	private static final byte DEAD = 4;
+	private static final int HEADER_BYTES = Integer.BYTES * 2;
+	private static final int MAX_GROUP = 4096;
+
+	private final Path dir;
+	private final long segmentBytes;
+	private final BlockingQueue<PendingRecord> pending = new LinkedBlockingQueue<>();
+	private final ArrayDeque<WalSegment> segments = new ArrayDeque<>();
+	private final Map<Long, WalSegment> liveIds = new HashMap<>();
+	private final Set<Long> deadIds = new HashSet<>();
+
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+	private WalSegment active;
+	private long maxSeenId;
+	private Thread writerThread;
+	private volatile boolean running;
+
+	/**
+	 * {@code content} is encoded on the appending thread: once the message is visible a consumer may
+	 * ack it and free its off-heap payload before the writer gets to it.
+	 */
+	private record PendingRecord(byte type, long id, Message message, byte[] content,
+	                             CompletableFuture<Void> durable) {
+
+	}
+
+	public WriteAheadLog(Path dir, long segmentBytes) {
+		this.dir = dir;
+		this.segmentBytes = segmentBytes;
+	}
+
+	/**
+	 * Reads every segment in order and returns the messages that were enqueued but never acked, in
+	 * log order. Messages whose last DEAD record was not followed by a NACK come back with status
+	 * {@code DEAD_LETTER}. Must be called once, before {@link #start()}.
+	 */
+	public List<Message> replay() throws IOException {
+		Files.createDirectories(dir);
+		List<Path> files;
+		try (Stream<Path> listing = Files.list(dir)) {
+			files = listing.filter(p -> p.getFileName()
+			                             .toString()
+			                             .matches("wal-\\d{20}\\.log"))
+			               .sorted()
+			               .toList();
+		}
+
+		Map<Long, Message> live = new LinkedHashMap<>();
+		for (int i = 0; i < files.size(); ++i) {
+			Path file = files.get(i);
+			String name = file.getFileName()
+			                  .toString();
+			WalSegment segment = new WalSegment(Long.parseLong(name.substring(4, 24)), file);
+			segments.addLast(segment);
+			replaySegment(segment, live, i == files.size() - 1);
+		}
+		long nextIndex = segments.isEmpty() ? 0 : segments.peekLast()
+		                                                  .getIndex() + 1;
+		roll(nextIndex);
+		compact();
+		log.info("WAL replayed {} segment(s): {} live message(s), maxId={}", files.size(), live.size(),
+				maxSeenId);
+		return new ArrayList<>(live.values());
+	}
+
+	/**
+	 * Drops every existing segment without reading it, for when a newer checkpoint already holds the
+	 * state. Must be called instead of {@link #replay()}, before {@link #start()}.
+	 */
+	public void discard() throws IOException {
+		Files.createDirectories(dir);
+		try (Stream<Path> listing = Files.list(dir)) {
+			for (Path file : listing.filter(p -> p.getFileName()
+			                                      .toString()
+			                                      .matches("wal-\\d{20}\\.log"))
+			                        .toList()) {
+				Files.delete(file);
+			}
+		}
+		roll(0);
+		log.info("WAL discarded in favour of a newer checkpoint.");
+	}
+
+	private void replaySegment(WalSegment segment, Map<Long, Message> live, boolean tail)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(segment.getPath(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			CRC32C crc = new CRC32C();
+			long good = 0;
+			while (in.remaining() >= HEADER_BYTES) {
+				int length = in.getInt();
+				int checksum = in.getInt();
+				if (length < 1 + Long.BYTES || length > in.remaining()) {
+					break;
+				}
+				ByteBuffer body = in.slice(in.position(), length);
+				crc.reset();
+				crc.update(body.duplicate());
+				if ((int) crc.getValue() != checksum) {
+					break;
+				}
+				in.position(in.position() + length);
+				apply(segment, body, live);
+				good = in.position();
+			}
+			if (good < channel.size()) {
+				if (!tail) {
+					throw new IOException("Corrupt WAL segment " + segment.getPath() + " at " + good);
+				}
+				log.warn("WAL tail of {} is torn at {} of {} bytes. Truncating.", segment.getPath(), good,
+						channel.size());
+				channel.truncate(good);
+			}
+		}
+	}
+
+	private void apply(WalSegment segment, ByteBuffer body, Map<Long, Message> live) {
+		byte type = body.get();
+		long id = body.getLong();
+		maxSeenId = Math.max(maxSeenId, id);
+		switch (type) {
+			case ENQUEUE -> {
+				Message message = Message.builder()
+				                         .id(id)
+				                         .senderName(readString(body))
+				                         .content(readString(body))
+				                         .created(new Timestamp(body.getLong()))
+				                         .priority(body.hasRemaining() ? body.get() : 0)
+				                         .build();
+				live.put(id, message);
+				own(id, segment);
+			}
+			case ACK -> {
+				live.remove(id);
+				disown(id);
+			}
+			case DEAD -> {
+				Message message = live.get(id);
+				if (message != null) {
+					message.setStatus(MessageStatus.DEAD_LETTER);
+					deadIds.add(id);
+				}
+			}
+			default -> {
+				// NACK only returns the message to READY, or out of the dead-letter store; it stays live.
+				Message message = live.get(id);
+				if (message != null) {
+					message.setStatus(null);
+				}
+				deadIds.remove(id);
+			}
+		}
+	}
+
+	private void own(long id, WalSegment segment) {
+		WalSegment previous = liveIds.put(id, segment);
+		if (previous != null) {
+			previous.release();
+		}
+		segment.retain();
+	}
+
+	private void disown(long id) {
+		WalSegment owner = liveIds.remove(id);
+		if (owner != null) {
+			owner.release();
+		}
+		deadIds.remove(id);
+	}
+
+	public long getMaxSeenId() {
+		return maxSeenId;
+	}
+
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	public void start() {
+		running = true;
+		writerThread = new Thread(this::writeLoop, "message-queue-wal");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	public CompletableFuture<Void> appendEnqueue(Message message) {
+		CompletableFuture<Void> durable = new CompletableFuture<>();
+		pending.offer(new PendingRecord(ENQUEUE, message.getId(), message,
+				bytes(message.getContent()), durable));
+		return durable;
+	}
+
+	public void appendAck(long id) {
+		pending.offer(new PendingRecord(ACK, id, null, null, null));
+	}
+
+	public void appendNack(long id) {
+		pending.offer(new PendingRecord(NACK, id, null, null, null));
+	}
+
+	public void appendDeadLetter(long id) {
+		pending.offer(new PendingRecord(DEAD, id, null, null, null));
+	}
+
+	private void writeLoop() {
+		List<PendingRecord> group = new ArrayList<>();
+		while (running || !pending.isEmpty()) {
+			try {
+				PendingRecord first = pending.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				group.add(first);
+				pending.drainTo(group, MAX_GROUP - 1);
+				writeGroup(group);
+				for (PendingRecord record : group) {
+					if (record.durable() != null) {
+						record.durable()
+						      .complete(null);
+					}
+				}
+			} catch (InterruptedException e) {
+				if (!running) {
+					continue;
+				}
+				log.debug("WAL writer interrupted but still running.");
+			} catch (IOException | RuntimeException e) {
+				log.error("WAL write failed: {}", e.getMessage(), e);
+				for (PendingRecord record : group) {
+					if (record.durable() != null) {
+						record.durable()
+						      .completeExceptionally(e);
+					}
+				}
+			}
+			group.clear();
+		}
+		log.debug("WAL writer stopped.");
+	}
+
+	private void writeGroup(List<PendingRecord> group) throws IOException {
+		List<WalSegment> owners = new ArrayList<>(group.size());
+		buffer.clear();
+		for (PendingRecord record : group) {
+			byte[] sender = null;
+			byte[] content = null;
+			int length = 1 + Long.BYTES;
+			if (record.type() == ENQUEUE) {
+				sender = bytes(record.message()
+				                     .getSenderName());
+				content = record.content();
+				length += Integer.BYTES * 2 + sender.length + content.length + Long.BYTES + 1;
+			}
+			reserve(HEADER_BYTES + length);
+			int start = buffer.position();
+			buffer.putInt(length);
+			buffer.putInt(0);
+			buffer.put(record.type());
+			buffer.putLong(record.id());
+			if (record.type() == ENQUEUE) {
+				buffer.putInt(sender.length);
+				buffer.put(sender);
+				buffer.putInt(content.length);
+				buffer.put(content);
+				Timestamp created = record.message()
+				                          .getCreated();
+				buffer.putLong(created == null ? 0L : created.getTime());
+				buffer.put((byte) record.message()
+				                        .getPriority());
+			}
+			CRC32C crc = new CRC32C();
+			crc.update(buffer.slice(start + HEADER_BYTES, length));
+			buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+			owners.add(active);
+		}
+		flushBuffer();
+		active.getChannel()
+		      .force(false);
+
+		for (int i = 0; i < group.size(); ++i) {
+			PendingRecord record = group.get(i);
+			switch (record.type()) {
+				case ENQUEUE -> own(record.id(), owners.get(i));
+				case ACK -> disown(record.id());
+				case DEAD -> deadIds.add(record.id());
+				default -> deadIds.remove(record.id());
+			}
+		}
+		compact();
+	}
+
+	/**
+	 * Makes room in the buffer for a record of {@code total} bytes, rolling to a new segment first if
+	 * the record would overflow the active one.
+	 */
+	private void reserve(int total) throws IOException {
+		long used = active.getSize() + buffer.position();
+		if (used > 0 && used + total > segmentBytes) {
+			flushBuffer();
+			active.getChannel()
+			      .force(false);
+			roll(active.getIndex() + 1);
+		}
+		if (buffer.remaining() < total) {
+			flushBuffer();
+			if (buffer.capacity() < total) {
+				buffer = ByteBuffer.allocateDirect(total);
+			}
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		buffer.flip();
+		long written = 0;
+		while (buffer.hasRemaining()) {
+			written += active.getChannel()
+			                 .write(buffer);
+		}
+		active.written(written);
+		buffer.clear();
+	}
+
+	private void roll(long index) throws IOException {
+		if (active != null) {
+			active.closeChannel();
+		}
+		active = new WalSegment(index, dir.resolve(WalSegment.fileName(index)));
+		active.openForAppend();
+		segments.addLast(active);
+	}
+
+	private void compact() throws IOException {
+		while (true) {
+			WalSegment oldest;
+			while ((oldest = segments.peekFirst()) != null && oldest != active && oldest.getLive() == 0) {
+				segments.pollFirst();
+				Files.deleteIfExists(oldest.getPath());
+				log.debug("WAL segment {} fully acked. Deleted.", oldest.getPath());
+			}
+			if (oldest == null || oldest == active || oldest.isPinned() ||
+			    oldest.getLive() * 4 > oldest.getEnqueued() || !relocate(oldest)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Copies the live ENQUEUE records of {@code segment} to the end of the log, so the segment holds
+	 * nothing live and the next prefix pass deletes it. Records are copied byte for byte, CRC
+	 * included; a DEAD record follows each copy whose message is dead-lettered. Returns false if some
+	 * live record could not be found in the file, in which case the segment is kept.
+	 */
+	private boolean relocate(WalSegment segment) throws IOException {
+		List<Long> ids = new ArrayList<>(segment.getLive());
+		List<WalSegment> owners = new ArrayList<>(segment.getLive());
+		try (FileChannel channel = FileChannel.open(segment.getPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			while (in.remaining() >= HEADER_BYTES) {
+				int start = in.position();
+				int length = in.getInt(start);
+				if (length < 1 + Long.BYTES || length > in.remaining() - HEADER_BYTES) {
+					break;
+				}
+				in.position(start + HEADER_BYTES + length);
+				long id = in.getLong(start + HEADER_BYTES + 1);
+				if (in.get(start + HEADER_BYTES) != ENQUEUE || liveIds.get(id) != segment) {
+					continue;
+				}
+				reserve(HEADER_BYTES + length);
+				buffer.put(in.slice(start, HEADER_BYTES + length));
+				ids.add(id);
+				owners.add(active);
+				if (deadIds.contains(id)) {
+					reserve(HEADER_BYTES + 1 + Long.BYTES);
+					int dead = buffer.position();
+					buffer.putInt(1 + Long.BYTES);
+					buffer.putInt(0);
+					buffer.put(DEAD);
+					buffer.putLong(id);
+					CRC32C crc = new CRC32C();
+					crc.update(buffer.slice(dead + HEADER_BYTES, 1 + Long.BYTES));
+					buffer.putInt(dead + Integer.BYTES, (int) crc.getValue());
+				}
+			}
+		}
+		flushBuffer();
+		active.getChannel()
+		      .force(false);
+		for (int i = 0; i < ids.size(); ++i) {
+			own(ids.get(i), owners.get(i));
+		}
+		log.debug("WAL segment {} compacted: {} live record(s) moved forward.", segment.getPath(),
+				ids.size());
+		if (segment.getLive() > 0) {
+			log.warn("WAL segment {} still has {} live record(s) after compaction. Keeping it.",
+					segment.getPath(), segment.getLive());
+			segment.pin();
+			return false;
+		}
+		return true;
+	}
+
+	private static byte[] bytes(String value) {
+		return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() {
+		running = false;
+		if (writerThread != null) {
+			// No interrupt: it would close the FileChannel mid-write. The writer polls with a timeout.
+			try {
+				writerThread.join(TimeUnit.SECONDS.toMillis(5));
+			} catch (InterruptedException e) {
+				Thread.currentThread()
+				      .interrupt();
+			}
+		}
+		try {
+			if (active != null) {
+				active.closeChannel();
+			}
+		} catch (IOException e) {
+			log.warn("WAL close failed: {}", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package vn.io.nghlong3004.message_queue.websocket;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.springframework.web.socket.WebSocketSession;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+
+@Getter
+@RequiredArgsConstructor
+class PushSubscription {
+
+	private final String consumerName;
+	private final MessageQueueService queue;
+	private final WebSocketSession session;
+	private final AtomicInteger credits = new AtomicInteger();
+	private final AtomicBoolean polling = new AtomicBoolean(false);
+	@Setter
+	private volatile CompletableFuture<List<Message>> poll;
+
+	boolean isOpen() {
+		return session.isOpen();
+	}
+}
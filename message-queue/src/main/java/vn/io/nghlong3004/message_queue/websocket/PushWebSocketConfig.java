@@ -0,0 +1,20 @@
+package vn.io.nghlong3004.message_queue.websocket;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class PushWebSocketConfig implements WebSocketConfigurer {
+
+	private final PushWebSocketHandler pushWebSocketHandler;
+
+	@Override
+	public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+		registry.addHandler(pushWebSocketHandler, "/ws/consume");
+	}
+}
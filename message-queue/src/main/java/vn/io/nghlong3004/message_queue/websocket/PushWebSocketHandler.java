@@ -0,0 +1,218 @@
+package vn.io.nghlong3004.message_queue.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
+import vn.io.nghlong3004.message_queue.exception.ResourceException;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.Status;
+import vn.io.nghlong3004.message_queue.model.dto.ConsumerResponse;
+import vn.io.nghlong3004.message_queue.model.dto.PushCommand;
+import vn.io.nghlong3004.message_queue.model.dto.PushDelivery;
+import vn.io.nghlong3004.message_queue.registry.MessageQueueRegistry;
+import vn.io.nghlong3004.message_queue.service.MessageQueueService;
+
+/**
+ * Pushes READY messages to a consumer as long as it has credits left. Each delivered message spends
+ * one credit; the consumer grants more with CREDIT, or with the credits field of an ACK.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PushWebSocketHandler extends TextWebSocketHandler {
+
+	private static final long POLL_RETRY_MS = 100;
+
+	private final MessageQueueRegistry registry;
+	private final ObjectMapper objectMapper;
+	private final ConcurrentMap<String, PushSubscription> subscriptions = new ConcurrentHashMap<>();
+
+	@Value("${message-queue.push.poll-timeout-ms}")
+	private long pollTimeoutMs;
+
+	@Value("${message-queue.push.send-time-limit-ms}")
+	private int sendTimeLimitMs;
+
+	@Value("${message-queue.push.buffer-size-limit}")
+	private int bufferSizeLimit;
+
+	@Override
+	public void afterConnectionEstablished(WebSocketSession session) throws IOException {
+		MultiValueMap<String, String> params = UriComponentsBuilder.fromUri(session.getUri())
+		                                                           .build()
+		                                                           .getQueryParams();
+		String consumerName = params.getFirst("consumerName");
+		if (consumerName == null || consumerName.isBlank()) {
+			session.close(CloseStatus.BAD_DATA.withReason("consumerName is required"));
+			return;
+		}
+		MessageQueueService queue;
+		try {
+			queue = registry.resolve(params.getFirst("queue"))
+			                .getQueue();
+		} catch (ResourceException e) {
+			session.close(CloseStatus.BAD_DATA.withReason(e.getMessage()));
+			return;
+		}
+		subscriptions.put(session.getId(), new PushSubscription(consumerName, queue,
+				new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, bufferSizeLimit)));
+		log.info("push -> consumer={} queue={} connected", consumerName, params.getFirst("queue"));
+	}
+
+	@Override
+	protected void handleTextMessage(WebSocketSession session, TextMessage textMessage)
+			throws IOException {
+		PushSubscription subscription = subscriptions.get(session.getId());
+		if (subscription == null) {
+			return;
+		}
+		PushCommand command;
+		try {
+			command = objectMapper.readValue(textMessage.getPayload(), PushCommand.class);
+		} catch (IOException | IllegalArgumentException e) {
+			sendError(subscription, HttpStatus.BAD_REQUEST, e.getMessage());
+			return;
+		}
+		// Credits are granted even if the ack fails (e.g. the lease already expired), otherwise they
+		// would be lost and the subscription would stall.
+		if (command.credits() != null && command.credits() > 0) {
+			subscription.getCredits()
+			            .addAndGet(command.credits());
+		}
+		try {
+			if (command.type() == PushCommand.Type.ACK && command.ids() != null) {
+				subscription.getQueue().handleAck(subscription.getConsumerName(),
+						command.status() == null ? Status.ACK : command.status(), command.ids(),
+						command.retryDelayMs());
+			}
+		} catch (ResourceException e) {
+			sendError(subscription, e.getStatus(), e.getMessage());
+		} catch (IllegalArgumentException e) {
+			sendError(subscription, HttpStatus.BAD_REQUEST, e.getMessage());
+		} finally {
+			dispatch(subscription);
+		}
+	}
+
+	@Override
+	public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+		PushSubscription subscription = subscriptions.remove(session.getId());
+		if (subscription == null) {
+			return;
+		}
+		// Withdraw the parked poll so a reconnect under the same name is not refused until it times
+		// out.
+		CompletableFuture<List<Message>> poll = subscription.getPoll();
+		if (poll != null) {
+			subscription.getQueue()
+			            .cancelPoll(subscription.getConsumerName(), poll);
+		}
+		try {
+			subscription.getQueue().handleAck(subscription.getConsumerName(), Status.NACK, 0L);
+		} catch (ResourceException e) {
+			// nothing was in flight
+		}
+		log.info("push -> consumer={} disconnected ({})", subscription.getConsumerName(), status);
+	}
+
+	private void dispatch(PushSubscription subscription) {
+		int credits = subscription.getCredits()
+		                          .get();
+		if (credits <= 0 || !subscription.isOpen() || !subscription.getPolling()
+		                                                           .compareAndSet(false, true)) {
+			return;
+		}
+		CompletableFuture<List<Message>> future;
+		try {
+			future = subscription.getQueue().pollAsync(subscription.getConsumerName(), credits,
+					pollTimeoutMs);
+		} catch (ResourceException e) {
+			subscription.getPolling()
+			            .set(false);
+			if (e.getStatus() == HttpStatus.CONFLICT) {
+				// Another poll under this name is parked, e.g. one of a session that just closed. No
+				// ACK will come for this session, so retry on the timer.
+				subscription.getQueue()
+				            .schedule(() -> dispatch(subscription), POLL_RETRY_MS);
+			}
+			// Otherwise the in-flight limit is reached: the next ACK dispatches again.
+			return;
+		}
+		subscription.setPoll(future);
+		future.whenComplete((messages, e) -> {
+			if (e == null) {
+				deliver(subscription, messages);
+			} else if (!(unwrap(e) instanceof ResourceException)) {
+				log.warn("push -> consumer={} poll failed: {}", subscription.getConsumerName(),
+						e.getMessage());
+			}
+			subscription.getPolling()
+			            .set(false);
+			dispatch(subscription);
+		});
+	}
+
+	private void deliver(PushSubscription subscription, List<Message> messages) {
+		subscription.getCredits()
+		            .addAndGet(-messages.size());
+		try {
+			List<ConsumerResponse> responses = new ArrayList<>(messages.size());
+			for (Message message : messages) {
+				responses.add(new ConsumerResponse(message.getId(), message.getSenderName(),
+						message.getContent(), message.getCreated()));
+			}
+			send(subscription, new PushDelivery(PushDelivery.Type.MESSAGES, responses, null, null));
+		} catch (IOException | RuntimeException e) {
+			log.debug("push -> consumer={} delivery failed: {}", subscription.getConsumerName(),
+					e.getMessage());
+			List<Long> ids = new ArrayList<>(messages.size());
+			for (Message message : messages) {
+				ids.add(message.getId());
+			}
+			try {
+				subscription.getQueue()
+				            .handleAck(subscription.getConsumerName(), Status.NACK, ids, 0L);
+			} catch (ResourceException ignored) {
+				// already released by afterConnectionClosed
+			}
+		}
+	}
+
+	private void sendError(PushSubscription subscription, HttpStatus status, String message) {
+		try {
+			send(subscription, new PushDelivery(PushDelivery.Type.ERROR, null, status.value(), message));
+		} catch (IOException | RuntimeException e) {
+			log.debug("push -> consumer={} error frame dropped: {}", subscription.getConsumerName(),
+					e.getMessage());
+		}
+	}
+
+	private void send(PushSubscription subscription, PushDelivery delivery) throws IOException {
+		if (!subscription.isOpen()) {
+			throw new IOException("Session closed");
+		}
+		subscription.getSession()
+		            .sendMessage(new TextMessage(objectMapper.writeValueAsString(delivery)));
+	}
+
+	private Throwable unwrap(Throwable e) {
+		return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+	}
+}
@@ -0,0 +1,110 @@
+package vn.io.nghlong3004.message_queue.benchmark;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.queue.DelayEngine;
+import vn.io.nghlong3004.message_queue.queue.DelayQueueStore;
+import vn.io.nghlong3004.message_queue.queue.DelayStore;
+import vn.io.nghlong3004.message_queue.queue.HashedTimingWheel;
+
+/**
+ * DELAY_QUEUE against TIMING_WHEEL under a standing NOT_READY backlog parked ten minutes out:
+ * {@value #PRODUCERS} producers offer {@value #MESSAGES} messages with a 20 ms delay while one taker
+ * drains them. The score is the time per message.
+ * <p>
+ * Run after {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main DelayStoreBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DelayStoreBenchmark {
+
+	static final int PRODUCERS = 8;
+	static final int MESSAGES = 1_000_000;
+	static final long DELAY_MS = 20;
+	static final long PARKED_MS = 600_000;
+
+	@Param({"DELAY_QUEUE", "TIMING_WHEEL"})
+	private DelayEngine engine;
+
+	@Param({"500000"})
+	private int backlog;
+
+	private Message message;
+	private DelayStore store;
+
+	@Setup(Level.Trial)
+	public void message() {
+		message = Message.builder()
+		                 .senderName("p")
+		                 .content("m")
+		                 .created(new Timestamp(System.currentTimeMillis()))
+		                 .build();
+	}
+
+	@Setup(Level.Iteration)
+	public void store() {
+		store = switch (engine) {
+			case DELAY_QUEUE -> new DelayQueueStore();
+			case TIMING_WHEEL -> new HashedTimingWheel(1, 512);
+		};
+		for (int i = 0; i < backlog; ++i) {
+			store.offer(message, PARKED_MS);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MESSAGES)
+	public long offerAndDrain() throws InterruptedException {
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] producers = new Thread[PRODUCERS];
+		for (int i = 0; i < PRODUCERS; ++i) {
+			producers[i] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int j = 0; j < MESSAGES / PRODUCERS; ++j) {
+					store.offer(message, DELAY_MS);
+				}
+			});
+			producers[i].start();
+		}
+		start.countDown();
+
+		List<Message> due = new ArrayList<>(1024);
+		long taken = 0;
+		while (taken < MESSAGES) {
+			store.take();
+			++taken;
+			due.clear();
+			taken += store.drainDue(due, 1023);
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		return taken;
+	}
+}
@@ -0,0 +1,131 @@
+package vn.io.nghlong3004.message_queue.benchmark;
+
+import java.sql.Timestamp;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.queue.PriorityReadyQueue;
+import vn.io.nghlong3004.message_queue.queue.ReadyEngine;
+import vn.io.nghlong3004.message_queue.queue.ReadyQueue;
+import vn.io.nghlong3004.message_queue.queue.RingBufferReadyQueue;
+
+/**
+ * PRIORITY against RING with {@value #THREADS} producers and {@value #THREADS} consumers moving
+ * {@value #MESSAGES} messages; consumers yield while the queue is empty. {@code signalPerPoll}
+ * adds the lock/signal every poll used to pay, so PRIORITY with it is the engine before the ring
+ * and RING without it is the engine after. The score is the time per message.
+ * <p>
+ * Run after {@code mvn test-compile} with
+ * {@code java -cp target/test-classes:target/classes:<test classpath> org.openjdk.jmh.Main ReadyQueueBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReadyQueueBenchmark {
+
+	static final int THREADS = 64;
+	static final int MESSAGES = 1_280_000;
+	static final int RING_SIZE = 65536;
+
+	@Param({"PRIORITY", "RING"})
+	private ReadyEngine engine;
+
+	@Param({"true", "false"})
+	private boolean signalPerPoll;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notFull = lock.newCondition();
+
+	private Message message;
+	private ReadyQueue queue;
+
+	@Setup(Level.Trial)
+	public void message() {
+		message = Message.builder()
+		                 .senderName("p")
+		                 .content("m")
+		                 .created(new Timestamp(System.currentTimeMillis()))
+		                 .build();
+	}
+
+	@Setup(Level.Iteration)
+	public void queue() {
+		queue = switch (engine) {
+			case PRIORITY -> new PriorityReadyQueue();
+			case RING -> new RingBufferReadyQueue(RING_SIZE);
+			case LEVELS -> throw new IllegalArgumentException("Not benchmarked: " + engine);
+		};
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MESSAGES)
+	public long offerAndPoll() throws InterruptedException {
+		AtomicLong consumed = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[THREADS * 2];
+		for (int i = 0; i < THREADS; ++i) {
+			threads[2 * i] = new Thread(() -> {
+				await(start);
+				for (int j = 0; j < MESSAGES / THREADS; ++j) {
+					while (!queue.offer(message)) {
+						Thread.yield();
+					}
+				}
+			});
+			threads[2 * i + 1] = new Thread(() -> {
+				await(start);
+				while (consumed.get() < MESSAGES) {
+					if (queue.poll() == null) {
+						Thread.yield();
+						continue;
+					}
+					consumed.incrementAndGet();
+					if (signalPerPoll) {
+						lock.lock();
+						try {
+							notFull.signal();
+						} finally {
+							lock.unlock();
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return consumed.get();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+			      .interrupt();
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package vn.io.nghlong3004.message_queue.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import vn.io.nghlong3004.message_queue.queue.PayloadArena;
+
+class MessageTest {
+
+	@Test
+	void releasingTwiceFreesTheBlockOnce() {
+		PayloadArena arena = new PayloadArena(4096, 4096);
+		Message first = Message.builder()
+		                       .content("first")
+		                       .build();
+		first.moveOffHeap(arena);
+		first.releasePayload();
+		first.moveOnHeap();
+		first.releasePayload();
+
+		Message second = Message.builder()
+		                        .content("second")
+		                        .build();
+		Message third = Message.builder()
+		                       .content("third")
+		                       .build();
+		second.moveOffHeap(arena);
+		third.moveOffHeap(arena);
+
+		assertThat(second.getContent()).isEqualTo("second");
+		assertThat(third.getContent()).isEqualTo("third");
+		assertThat(arena.getUsedBytes()).isEqualTo(64L);
+	}
+}
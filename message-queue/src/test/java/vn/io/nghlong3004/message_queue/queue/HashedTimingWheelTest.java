@@ -0,0 +1,70 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import vn.io.nghlong3004.message_queue.model.DelayedMessage;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+class HashedTimingWheelTest {
+
+	private final HashedTimingWheel wheel = new HashedTimingWheel(1, 512);
+
+	@Test
+	void nextDueIsTheDistanceToTheEarliestOccupiedBucket() {
+		assertThat(wheel.nanosUntilNextDue()).isEqualTo(Long.MAX_VALUE);
+
+		wheel.offer(message("late"), 400);
+		wheel.offer(message("early"), 200);
+
+		assertThat(wheel.nanosUntilNextDue()).isBetween(TimeUnit.MILLISECONDS.toNanos(100),
+				TimeUnit.MILLISECONDS.toNanos(201));
+	}
+
+	@Test
+	void nextDueIsZeroOnceAnEntryIsDue() throws Exception {
+		wheel.offer(message("m"), 0);
+		Thread.sleep(5);
+
+		assertThat(wheel.nanosUntilNextDue()).isZero();
+	}
+
+	@Test
+	void cancelledEntryIsNeverDrained() throws Exception {
+		DelayedMessage cancelled = wheel.offer(message("cancelled"), 0);
+		wheel.offer(message("kept"), 0);
+
+		assertThat(wheel.cancel(cancelled)).isTrue();
+		assertThat(wheel.cancel(cancelled)).isFalse();
+		assertThat(wheel.size()).isEqualTo(1);
+
+		Thread.sleep(5);
+		List<Message> due = new ArrayList<>();
+		wheel.drainDue(due, 10);
+		assertThat(due).extracting(Message::getContent)
+		               .containsExactly("kept");
+		assertThat(wheel.size()).isZero();
+	}
+
+	@Test
+	void drainedEntryCannotBeCancelled() throws Exception {
+		DelayedMessage delayed = wheel.offer(message("m"), 0);
+		Thread.sleep(5);
+		wheel.drainDue(new ArrayList<>(), 10);
+
+		assertThat(wheel.cancel(delayed)).isFalse();
+		assertThat(wheel.size()).isZero();
+	}
+
+	private static Message message(String content) {
+		return Message.builder()
+		              .senderName("p")
+		              .content(content)
+		              .created(new Timestamp(System.currentTimeMillis()))
+		              .build();
+	}
+}
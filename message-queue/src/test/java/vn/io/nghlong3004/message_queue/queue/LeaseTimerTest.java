@@ -0,0 +1,69 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import vn.io.nghlong3004.message_queue.model.LeaseExpiry;
+
+class LeaseTimerTest {
+
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final LeaseTimer timer = new LeaseTimer(10, 8);
+	private final List<LeaseExpiry> fired = new ArrayList<>();
+
+	@Test
+	void firesOnlyOnceTheDeadlineHasPassed() {
+		long now = System.nanoTime();
+		LeaseExpiry expiry = new LeaseExpiry(1L, "c", now + 25 * MS);
+		timer.schedule(expiry);
+
+		timer.expire(now + 24 * MS, fired::add);
+		assertThat(fired).isEmpty();
+
+		timer.expire(now + 25 * MS, fired::add);
+		assertThat(fired).containsExactly(expiry);
+
+		timer.expire(now + 50 * MS, fired::add);
+		assertThat(fired).hasSize(1);
+	}
+
+	@Test
+	void cancelledLeaseNeverFires() {
+		long now = System.nanoTime();
+		timer.schedule(new LeaseExpiry(1L, "c", now + 20 * MS));
+		timer.cancel(new LeaseExpiry(1L, "c", now + 20 * MS));
+
+		timer.expire(now + 1000 * MS, fired::add);
+		assertThat(fired).isEmpty();
+	}
+
+	@Test
+	void deadlineBeyondOneRevolutionWaitsForItsTurn() {
+		long now = System.nanoTime();
+		LeaseExpiry expiry = new LeaseExpiry(1L, "c", now + 200 * MS);
+		timer.schedule(expiry);
+
+		for (long at = now; at < now + 200 * MS; at += 10 * MS) {
+			timer.expire(at, fired::add);
+		}
+		assertThat(fired).isEmpty();
+
+		timer.expire(now + 205 * MS, fired::add);
+		assertThat(fired).containsExactly(expiry);
+	}
+
+	@Test
+	void deadlineInAPassedTickFiresOnTheNextPass() {
+		long now = System.nanoTime();
+		timer.expire(now + 100 * MS, fired::add);
+		LeaseExpiry late = new LeaseExpiry(1L, "c", now + 30 * MS);
+		timer.schedule(late);
+
+		timer.expire(now + 101 * MS, fired::add);
+		assertThat(fired).containsExactly(late);
+	}
+}
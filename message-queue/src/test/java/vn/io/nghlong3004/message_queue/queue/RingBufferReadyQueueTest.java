@@ -0,0 +1,132 @@
+package vn.io.nghlong3004.message_queue.queue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import vn.io.nghlong3004.message_queue.model.Message;
+
+class RingBufferReadyQueueTest {
+
+	@Test
+	void capacityIsRoundedUpToAPowerOfTwo() {
+		assertThat(new RingBufferReadyQueue(5).capacity()).isEqualTo(8);
+		assertThat(new RingBufferReadyQueue(8).capacity()).isEqualTo(8);
+		assertThat(new RingBufferReadyQueue(0).capacity()).isEqualTo(2);
+	}
+
+	@Test
+	void emptyAndFullBoundaries() {
+		RingBufferReadyQueue ring = new RingBufferReadyQueue(4);
+		assertThat(ring.poll()).isNull();
+		assertThat(ring.size()).isZero();
+
+		for (long id = 0; id < 4; ++id) {
+			assertThat(ring.offer(message(id))).isTrue();
+		}
+		assertThat(ring.offer(message(4))).isFalse();
+		assertThat(ring.size()).isEqualTo(4);
+
+		assertThat(ring.poll()
+		               .getId()).isZero();
+		assertThat(ring.offer(message(4))).isTrue();
+		assertThat(ring.offer(message(5))).isFalse();
+
+		List<Message> drained = new ArrayList<>();
+		assertThat(ring.drainTo(drained, 10)).isEqualTo(4);
+		assertThat(drained).extracting(Message::getId)
+		                   .containsExactly(1L, 2L, 3L, 4L);
+		assertThat(ring.poll()).isNull();
+		assertThat(ring.size()).isZero();
+	}
+
+	@Test
+	void staysFifoAcrossManyWrapArounds() {
+		RingBufferReadyQueue ring = new RingBufferReadyQueue(4);
+		long next = 0;
+		long expected = 0;
+		for (int round = 0; round < 1000; ++round) {
+			for (int i = 0; i < 3; ++i) {
+				assertThat(ring.offer(message(next++))).isTrue();
+			}
+			for (int i = 0; i < 3; ++i) {
+				assertThat(ring.poll()
+				               .getId()).isEqualTo(expected++);
+			}
+		}
+		assertThat(ring.size()).isZero();
+	}
+
+	@Test
+	void everyMessageIsDeliveredExactlyOnceUnderContention() throws Exception {
+		int threads = 4;
+		int perProducer = 50_000;
+		int total = threads * perProducer;
+		RingBufferReadyQueue ring = new RingBufferReadyQueue(64);
+		AtomicIntegerArray seen = new AtomicIntegerArray(total);
+		AtomicLong consumed = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; ++t) {
+			long base = (long) t * perProducer;
+			workers.add(new Thread(() -> {
+				await(start);
+				for (long id = base; id < base + perProducer; ++id) {
+					Message message = message(id);
+					while (!ring.offer(message)) {
+						Thread.yield();
+					}
+				}
+			}));
+			workers.add(new Thread(() -> {
+				await(start);
+				while (consumed.get() < total) {
+					Message message = ring.poll();
+					if (message == null) {
+						Thread.yield();
+						continue;
+					}
+					seen.incrementAndGet(Math.toIntExact(message.getId()));
+					consumed.incrementAndGet();
+				}
+			}));
+		}
+		workers.forEach(Thread::start);
+		start.countDown();
+		for (Thread worker : workers) {
+			worker.join(TimeUnit.SECONDS.toMillis(30));
+			assertThat(worker.isAlive()).isFalse();
+		}
+
+		assertThat(consumed.get()).isEqualTo(total);
+		for (int id = 0; id < total; ++id) {
+			assertThat(seen.get(id)).as("deliveries of id %d", id)
+			                        .isEqualTo(1);
+		}
+		assertThat(ring.poll()).isNull();
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread()
+			      .interrupt();
+		}
+	}
+
+	private static Message message(long id) {
+		return Message.builder()
+		              .id(id)
+		              .senderName("p")
+		              .content("m" + id)
+		              .created(new Timestamp(System.currentTimeMillis()))
+		              .build();
+	}
+}
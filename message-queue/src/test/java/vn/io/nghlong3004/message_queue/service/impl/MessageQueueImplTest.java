@@ -0,0 +1,181 @@
+package vn.io.nghlong3004.message_queue.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import vn.io.nghlong3004.message_queue.exception.ResourceException;
+import vn.io.nghlong3004.message_queue.metrics.QueueMetrics;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.Status;
+import vn.io.nghlong3004.message_queue.queue.AdmissionMode;
+import vn.io.nghlong3004.message_queue.queue.DelayEngine;
+import vn.io.nghlong3004.message_queue.queue.PromotionMode;
+import vn.io.nghlong3004.message_queue.queue.ReadyEngine;
+import vn.io.nghlong3004.message_queue.registry.QueueSettings;
+import vn.io.nghlong3004.message_queue.snapshot.QueueSnapshot;
+import vn.io.nghlong3004.message_queue.snapshot.SnapshotEntry;
+
+class MessageQueueImplTest {
+
+	private MessageQueueImpl queue;
+
+	@AfterEach
+	void close() {
+		if (queue != null) {
+			queue.close();
+		}
+	}
+
+	@Test
+	void delayedMessagesAtCapacityAreAllPromoted() throws Exception {
+		int capacity = 4;
+		queue = start(settings().capacity(capacity)
+		                        .delayMillis(50));
+		for (int i = 0; i < capacity; ++i) {
+			queue.enqueue(message("m" + i));
+		}
+
+		List<Message> polled = new ArrayList<>();
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (polled.size() < capacity && System.nanoTime() < deadline) {
+			polled.addAll(queue.pollAsync("c", capacity, 1000)
+			                   .get(2, TimeUnit.SECONDS));
+		}
+
+		assertThat(polled).extracting(Message::getContent)
+		                  .containsExactlyInAnyOrder("m0", "m1", "m2", "m3");
+	}
+
+	@Test
+	void expiredLeaseIsRedeliveredAndAckedLeaseIsNot() throws Exception {
+		queue = start(settings().delayMillis(0)
+		                        .visibilityTimeoutMs(300));
+		queue.enqueue(message("expires"));
+		queue.enqueue(message("acked"));
+
+		Message expires = queue.pollAsync("c", 1, 1000)
+		                       .get(2, TimeUnit.SECONDS)
+		                       .get(0);
+		Message acked = queue.pollAsync("c", 1, 1000)
+		                     .get(2, TimeUnit.SECONDS)
+		                     .get(0);
+		assertThat(expires.getContent()).isEqualTo("expires");
+		queue.handleAck("c", Status.ACK, List.of(acked.getId()), null);
+
+		List<Message> redelivered = queue.pollAsync("c", 2, 1000)
+		                                 .get(2, TimeUnit.SECONDS);
+		assertThat(redelivered).extracting(Message::getContent)
+		                       .containsExactly("expires");
+		assertThat(queue.getExpiredLeases()).isEqualTo(1L);
+	}
+
+	@Test
+	void secondPollOfAConsumerIsRejectedWhileTheFirstIsParked() throws Exception {
+		queue = start(settings().delayMillis(0));
+		CompletableFuture<List<Message>> parked = queue.pollAsync("c", 1, 5000);
+
+		assertThatThrownBy(() -> queue.pollAsync("c", 1, 5000)).isInstanceOf(
+				ResourceException.class);
+
+		queue.enqueue(message("m"));
+		assertThat(parked.get(2, TimeUnit.SECONDS)).extracting(Message::getContent)
+		                                           .containsExactly("m");
+		queue.enqueue(message("next"));
+		assertThat(queue.pollAsync("c", 1, 1000)
+		                .get(2, TimeUnit.SECONDS)).extracting(Message::getContent)
+		                                          .containsExactly("next");
+	}
+
+	@Test
+	void cancelledPollFreesTheConsumerName() throws Exception {
+		queue = start(settings().delayMillis(0));
+		CompletableFuture<List<Message>> stale = queue.pollAsync("c", 1, 5000);
+
+		assertThat(queue.cancelPoll("c", stale)).isTrue();
+		assertThat(stale).isCompletedExceptionally();
+		assertThat(queue.cancelPoll("c", stale)).isFalse();
+
+		CompletableFuture<List<Message>> fresh = queue.pollAsync("c", 1, 5000);
+		queue.enqueue(message("m"));
+		assertThat(fresh.get(2, TimeUnit.SECONDS)).extracting(Message::getContent)
+		                                          .containsExactly("m");
+	}
+
+	@Test
+	void closingMidPromotionSnapshotsEveryMessage(@TempDir Path dir) throws Exception {
+		int count = 2000;
+		for (int round = 0; round < 5; ++round) {
+			Path snapshot = dir.resolve("snapshot-" + round + ".bin");
+			MessageQueueImpl closing = start(settings().capacity(count)
+			                                           .delayMillis(1)
+			                                           .snapshotEnabled(true)
+			                                           .snapshotPath(snapshot.toString()));
+			for (int i = 0; i < count; ++i) {
+				closing.enqueue(message("m" + i));
+			}
+			closing.close();
+
+			assertThat(QueueSnapshot.read(snapshot)
+			                        .entries()).extracting(SnapshotEntry::message)
+			                                   .extracting(Message::getContent)
+			                                   .hasSize(count)
+			                                   .doesNotHaveDuplicates();
+		}
+	}
+
+	static MessageQueueImpl start(QueueSettings.QueueSettingsBuilder settings) {
+		QueueSettings built = settings.build();
+		MessageQueueImpl queue = new MessageQueueImpl(built,
+				new QueueMetrics(new SimpleMeterRegistry(), built.getName()));
+		queue.init();
+		return queue;
+	}
+
+	static QueueSettings.QueueSettingsBuilder settings() {
+		return QueueSettings.builder()
+		                    .name("test")
+		                    .enqueueTimeoutMs(0)
+		                    .capacity(128)
+		                    .admission(AdmissionMode.COUNT)
+		                    .memoryBudgetBytes(1L << 20)
+		                    .memoryHighWatermark(0.9)
+		                    .memoryLowWatermark(0.7)
+		                    .readyEngine(ReadyEngine.PRIORITY)
+		                    .ringSize(1024)
+		                    .partitions(1)
+		                    .starvationInterval(16)
+		                    .promotionMode(PromotionMode.THREAD)
+		                    .promotionBatchSize(64)
+		                    .delayEngine(DelayEngine.DELAY_QUEUE)
+		                    .wheelTickMs(1)
+		                    .wheelSize(512)
+		                    .maxInFlight(64)
+		                    .visibilityTimeoutMs(30000)
+		                    .maxDeliveries(5)
+		                    .retryBaseDelayMs(0)
+		                    .retryMaxDelayMs(0)
+		                    .retryMultiplier(2.0)
+		                    .deadLetterCapacity(100)
+		                    .groups(List.of())
+		                    .latencyWindowMs(10000)
+		                    .metricSnapshotMs(100);
+	}
+
+	static Message message(String content) {
+		return Message.builder()
+		              .senderName("p")
+		              .content(content)
+		              .created(new Timestamp(System.currentTimeMillis()))
+		              .build();
+	}
+}
@@ -0,0 +1,65 @@
+package vn.io.nghlong3004.message_queue.wal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import vn.io.nghlong3004.message_queue.model.Message;
+import vn.io.nghlong3004.message_queue.model.MessageStatus;
+
+class WriteAheadLogTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void longLivedRecordsDoNotPinLaterSegments() throws Exception {
+		WriteAheadLog wal = new WriteAheadLog(dir, 1024);
+		wal.replay();
+		wal.start();
+		wal.appendEnqueue(message(1, "stuck"))
+		   .join();
+		wal.appendEnqueue(message(2, "dead"))
+		   .join();
+		wal.appendDeadLetter(2);
+		for (long id = 3; id < 2000; ++id) {
+			wal.appendEnqueue(message(id, "payload-" + id))
+			   .join();
+			wal.appendAck(id);
+		}
+		wal.close();
+
+		assertThat(segmentCount()).isLessThanOrEqualTo(3);
+
+		WriteAheadLog reopened = new WriteAheadLog(dir, 1024);
+		List<Message> live = reopened.replay();
+		reopened.close();
+		assertThat(live).extracting(Message::getId)
+		                .containsExactly(1L, 2L);
+		assertThat(live.get(0)
+		               .getContent()).isEqualTo("stuck");
+		assertThat(live.get(1)
+		               .getStatus()).isEqualTo(MessageStatus.DEAD_LETTER);
+		assertThat(reopened.getMaxSeenId()).isEqualTo(1999L);
+	}
+
+	private long segmentCount() throws Exception {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.count();
+		}
+	}
+
+	private static Message message(long id, String content) {
+		return Message.builder()
+		              .id(id)
+		              .senderName("p")
+		              .content(content)
+		              .created(new Timestamp(0L))
+		              .build();
+	}
+}
@@ -0,0 +1,79 @@
+package vn.io.nghlong3004.producer.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Client-side copy of the message-queue binary frame layout: {@code int length | byte type | int
+ * correlationId | payload}.
+ */
+@UtilityClass
+class BinaryProtocol {
+
+	static final byte PUT = 1;
+	static final byte METRIC = 4;
+	static final byte OPEN = 5;
+	static final byte ERROR = 0x7F;
+	static final byte QUEUE_HANDLE = 0x40;
+
+	static final int MAX_FRAME_LENGTH = 16 << 20;
+
+	@FunctionalInterface
+	interface PayloadWriter {
+
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	static byte[] encode(byte type, int correlationId, PayloadWriter payload) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeByte(type);
+		out.writeInt(correlationId);
+		payload.write(out);
+		byte[] frame = bytes.toByteArray();
+		ByteBuffer.wrap(frame)
+		          .putInt(0, frame.length - Integer.BYTES);
+		return frame;
+	}
+
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Binds {@code queue} to a connection-local handle. Runs synchronously before the reader thread
+	 * starts, so the reply is the next frame on the wire.
+	 */
+	static short open(DataOutputStream out, DataInputStream in, String queue) throws IOException {
+		out.write(encode(OPEN, 0, payload -> writeString(payload, queue)));
+		out.flush();
+		int length = in.readInt();
+		if (length <= 0 || length > MAX_FRAME_LENGTH) {
+			throw new IOException("Invalid frame length " + length);
+		}
+		byte[] frame = new byte[length];
+		in.readFully(frame);
+		ByteBuffer buffer = ByteBuffer.wrap(frame);
+		byte type = buffer.get();
+		buffer.getInt();
+		if (type == ERROR) {
+			short status = buffer.getShort();
+			throw new IOException("Cannot open queue " + queue + ": " + status + " " + readString(buffer));
+		}
+		return buffer.getShort();
+	}
+
+	static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,21 @@
+package vn.io.nghlong3004.producer.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import vn.io.nghlong3004.producer.client.BinaryMessageQueueClient;
+
+@Configuration
+@ConditionalOnProperty(name = "producer.transport", havingValue = "BINARY")
+public class BinaryClientConfig {
+
+	@Bean
+	public BinaryMessageQueueClient binaryMessageQueueClient(
+			@Value("${producer.binary.host}") String host, @Value("${producer.binary.port}") int port,
+			@Value("${producer.queue}") String queue,
+			@Value("${producer.connect-timeout-ms}") int connectTimeoutMs,
+			@Value("${producer.write-timeout-ms}") long writeTimeoutMs) {
+		return new BinaryMessageQueueClient(host, port, queue, connectTimeoutMs, writeTimeoutMs);
+	}
+}
@@ -1,9 +1,11 @@
 package vn.io.nghlong3004.producer.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import vn.io.nghlong3004.producer.client.BinaryMessageQueueClient;
 import vn.io.nghlong3004.producer.model.dto.MessageQueueMetric;
 import vn.io.nghlong3004.producer.service.MetricService;
 
@@ -12,13 +14,19 @@ import vn.io.nghlong3004.producer.service.MetricService;
 public class Metric implements MetricService {
 
 	private final RestTemplate rest;
+	private final ObjectProvider<BinaryMessageQueueClient> binaryClient;
 
-	@Value("${base-url}")
+	@Value("${base-url}/${producer.queue}")
 	private String baseUrl;
 
 	@Override
 	public MessageQueueMetric fetch() {
 		try {
+			BinaryMessageQueueClient client = binaryClient.getIfAvailable();
+			if (client != null) {
+				return client.metric()
+				             .get();
+			}
 			return rest.getForObject(baseUrl + "/metric", MessageQueueMetric.class);
 		} catch (Exception e) {
 			return null;
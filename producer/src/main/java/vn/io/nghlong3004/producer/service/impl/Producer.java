@@ -1,9 +1,13 @@
 package vn.io.nghlong3004.producer.service.impl;
 
+import java.util.ArrayList;
+import java.util.List;
 import lombok.Builder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.client.RestTemplate;
+import vn.io.nghlong3004.producer.client.BinaryMessageQueueClient;
 import vn.io.nghlong3004.producer.model.Message;
+import vn.io.nghlong3004.producer.model.dto.ProducerResult;
 import vn.io.nghlong3004.producer.util.MessageGenerator;
 
 @Slf4j
@@ -12,19 +16,64 @@ public class Producer implements Runnable {
 
 	private final String name;
 	private final RestTemplate rest;
+	private final BinaryMessageQueueClient binaryClient;
 	private final String baseUrl;
+	private final int batchSize;
 	private boolean running;
 
 	@Override
 	public void run() {
 		while (running) {
 			try {
-				Message item = MessageGenerator.getMessage(name);
-				rest.postForObject(baseUrl + "/put", item, Message.class);
-				log.info("[{}] sent", name);
+				if (binaryClient != null) {
+					sendBinary();
+				} else if (batchSize > 1) {
+					sendBatch();
+				} else {
+					Message item = MessageGenerator.getMessage(name);
+					rest.postForObject(baseUrl + "/put", item, Message.class);
+					log.info("[{}] sent", name);
+				}
 			} catch (Exception e) {
 				//log.warn("[{}] send error: {}", name, e.toString());
 			}
 		}
 	}
+
+	private void sendBinary() {
+		List<Message> items = newBatch();
+		boolean[] results = binaryClient.put(items)
+		                                .join();
+		int accepted = 0;
+		for (boolean result : results) {
+			if (result) {
+				++accepted;
+			}
+		}
+		log.info("[{}] sent {}/{}", name, accepted, items.size());
+	}
+
+	private void sendBatch() {
+		List<Message> items = newBatch();
+		ProducerResult[] results = rest.postForObject(baseUrl + "/put/batch", items,
+				ProducerResult[].class);
+		int accepted = 0;
+		if (results != null) {
+			for (ProducerResult result : results) {
+				if (result.accepted()) {
+					++accepted;
+				}
+			}
+		}
+		log.info("[{}] sent {}/{}", name, accepted, batchSize);
+	}
+
+	private List<Message> newBatch() {
+		int size = Math.max(1, batchSize);
+		List<Message> items = new ArrayList<>(size);
+		for (int i = 0; i < size; ++i) {
+			items.add(MessageGenerator.getMessage(name));
+		}
+		return items;
+	}
 }
@@ -5,20 +5,27 @@ import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import vn.io.nghlong3004.producer.client.BinaryMessageQueueClient;
 import vn.io.nghlong3004.producer.model.dto.MessageQueueMetric;
 import vn.io.nghlong3004.producer.service.MetricService;
 
@@ -28,15 +35,23 @@ import vn.io.nghlong3004.producer.service.MetricService;
 public class ProducerScaler implements ApplicationRunner {
 
 	private ScheduledExecutorService producerPool;
+	private ExecutorService producerWorkers;
 	private ScheduledExecutorService controlPool;
 	private final RestTemplate rest;
 	private final MetricService metrics;
+	private final MeterRegistry meterRegistry;
+	private final ObjectProvider<BinaryMessageQueueClient> binaryClient;
 
-	@Value("${base-url}")
+	@Value("${base-url}/${producer.queue}")
 	private String baseUrl;
 
+	@Value("${spring.threads.virtual.enabled}")
+	private boolean virtualThreads;
+
 	@Value("${producer.scaler.pace-ms}")
 	private long paceMs;
+	@Value("${producer.batch-size}")
+	private int batchSize;
 
 	@Value("${producer.scaler.initial}")
 	private int initialProducers;
@@ -63,10 +78,12 @@ public class ProducerScaler implements ApplicationRunner {
 	@Value("${producer.scaler.down-threshold}")
 	private double downThreshold;
 
-	private final List<ScheduledFuture<?>> producerTasks = new ArrayList<>();
+	private final List<PacedTask> producerTasks = new ArrayList<>();
 	private ScheduledFuture<?> controlTask;
+	private Counter scaledUp;
+	private Counter scaledDown;
 
-	private double utilEma = 0.0;
+	private volatile double utilEma = 0.0;
 	private boolean firstTick = true;
 	private long lastScaleAt = 0L;
 	private long highSince = -1L;
@@ -74,9 +91,19 @@ public class ProducerScaler implements ApplicationRunner {
 
 	@PostConstruct
 	public void init() {
-		producerPool = Executors.newScheduledThreadPool(Math.max(1, maxProducers),
-				new NamedThreadFactory("producer-"));
+		producerPool = Executors.newSingleThreadScheduledExecutor(
+				new NamedThreadFactory("producer-tick-"));
+		producerWorkers = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor()
+				: Executors.newFixedThreadPool(Math.max(1, maxProducers),
+						new NamedThreadFactory("producer-"));
 		controlPool = Executors.newScheduledThreadPool(1, new NamedThreadFactory("producer-ctrl-"));
+
+		Gauge.builder("producer.active", producerTasks, List::size)
+		     .register(meterRegistry);
+		Gauge.builder("producer.scaler.utilization.ema", this, scaler -> scaler.utilEma)
+		     .register(meterRegistry);
+		scaledUp = meterRegistry.counter("producer.scaler.decisions", "direction", "up");
+		scaledDown = meterRegistry.counter("producer.scaler.decisions", "direction", "down");
 	}
 
 	@Override
@@ -97,6 +124,7 @@ public class ProducerScaler implements ApplicationRunner {
 		cancelAllProducers();
 		controlPool.shutdownNow();
 		producerPool.shutdownNow();
+		producerWorkers.shutdownNow();
 	}
 
 	private void controlTick() {
@@ -179,6 +207,7 @@ public class ProducerScaler implements ApplicationRunner {
 			return;
 		}
 		log.info("Scale producers {} -> {} (utilEma={})", cur, target, String.format("%.2f", utilEma));
+		(target > cur ? scaledUp : scaledDown).increment();
 		scaleTo(target);
 	}
 
@@ -209,8 +238,8 @@ public class ProducerScaler implements ApplicationRunner {
 		long jitter = Math.max(0, paceMs / 5);
 		long initialDelay = (jitter == 0) ? 0 : ThreadLocalRandom.current()
 		                                                         .nextLong(jitter);
-		ScheduledFuture<?> task = producerPool.scheduleAtFixedRate(runnable, initialDelay, paceMs,
-				TimeUnit.MILLISECONDS);
+		PacedTask task = new PacedTask(runnable, producerWorkers);
+		task.start(producerPool, initialDelay, paceMs);
 		producerTasks.add(task);
 	}
 
@@ -219,13 +248,13 @@ public class ProducerScaler implements ApplicationRunner {
 		if (last < 0) {
 			return;
 		}
-		ScheduledFuture<?> scheduledFuture = producerTasks.remove(last);
-		scheduledFuture.cancel(true);
+		producerTasks.remove(last)
+		             .cancel();
 	}
 
 	private void cancelAllProducers() {
-		for (ScheduledFuture<?> scheduledFuture : producerTasks) {
-			scheduledFuture.cancel(true);
+		for (PacedTask task : producerTasks) {
+			task.cancel();
 		}
 		producerTasks.clear();
 	}
@@ -234,7 +263,9 @@ public class ProducerScaler implements ApplicationRunner {
 		return Producer.builder()
 		               .name(name)
 		               .rest(rest)
+		               .binaryClient(binaryClient.getIfAvailable())
 		               .baseUrl(baseUrl)
+		               .batchSize(batchSize)
 		               .running(true)
 		               .build();
 	}
@@ -243,6 +274,45 @@ public class ProducerScaler implements ApplicationRunner {
 		return Math.max(min, Math.min(max, v));
 	}
 
+	/**
+	 * Fired by the scheduler every pace period; hands the worker to the executor unless its
+	 * previous run is still going.
+	 */
+	private static class PacedTask implements Runnable {
+
+		private final Runnable work;
+		private final ExecutorService executor;
+		private ScheduledFuture<?> tick;
+		private Future<?> current;
+		private boolean cancelled;
+
+		PacedTask(Runnable work, ExecutorService executor) {
+			this.work = work;
+			this.executor = executor;
+		}
+
+		synchronized void start(ScheduledExecutorService scheduler, long initialDelayMs,
+				long periodMs) {
+			tick = scheduler.scheduleAtFixedRate(this, initialDelayMs, periodMs,
+					TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public synchronized void run() {
+			if (!cancelled && (current == null || current.isDone())) {
+				current = executor.submit(work);
+			}
+		}
+
+		synchronized void cancel() {
+			cancelled = true;
+			tick.cancel(false);
+			if (current != null) {
+				current.cancel(true);
+			}
+		}
+	}
+
 	private static class NamedThreadFactory implements ThreadFactory {
 
 		private final String prefix;